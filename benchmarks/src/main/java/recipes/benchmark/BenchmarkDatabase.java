@@ -0,0 +1,77 @@
+package recipes.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Recipe;
+import recipes.exception.DbException;
+import recipes.service.RecipeService;
+
+/** Creates and seeds the recipe table the benchmarks run against. */
+public final class BenchmarkDatabase {
+    private static final String SCHEMA_FILE = "benchmark_schema.sql";
+
+    private BenchmarkDatabase() {
+    }
+
+    public static void resetSchema() {
+        try (Connection conn = DbConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : readSchema().split(";")) {
+                String trimmed = stripComments(sql).trim();
+                if (!trimmed.isEmpty()) {
+                    stmt.execute(trimmed);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error creating benchmark schema", e);
+        }
+    }
+
+    public static void seed(RecipeService service, int rowCount) {
+        List<Recipe> batch = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            batch.add(newRecipe(i));
+        }
+        service.addRecipes(batch);
+    }
+
+    public static Recipe newRecipe(int i) {
+        return new Recipe("Recipe " + i, 1 + i % 12, 5.0 + i % 60, 10.0 + i % 90,
+            i % 3 == 0 ? null : "Benchmark notes for recipe " + i);
+    }
+
+    private static String readSchema() {
+        try (InputStream in = BenchmarkDatabase.class.getClassLoader().getResourceAsStream(SCHEMA_FILE)) {
+            if (in == null) {
+                throw new DbException("Missing " + SCHEMA_FILE);
+            }
+            byte[] bytes = new byte[8192];
+            StringBuilder content = new StringBuilder();
+            int read;
+            while ((read = in.read(bytes)) != -1) {
+                content.append(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            }
+            return content.toString();
+        } catch (IOException e) {
+            throw new DbException(e);
+        }
+    }
+
+    private static String stripComments(String sql) {
+        StringBuilder out = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                out.append(line).append('\n');
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package recipes.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with defaults suited to tracking results across
+ * releases: JSON results in target/jmh-result.json and an in-memory H2
+ * database unless -Drecipes.db.url names a real server. Other
+ * -Drecipes.db.* settings (profile, user, password, ...) are passed on to
+ * the benchmark JVM. Any standard JMH command line option (benchmark
+ * regexp, -p rowCount=..., -t, -f, ...) can be passed as well.
+ */
+public class BenchmarkRunner {
+    static final String DEFAULT_DB_URL = "jdbc:h2:mem:recipes;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .parent(commandLine)
+            .jvmArgsAppend("-Drecipes.db.url=" + System.getProperty("recipes.db.url", DEFAULT_DB_URL));
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("recipes.db.") && !name.equals("recipes.db.url")) {
+                options.jvmArgsAppend("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(System.getProperty("bench.result", "target/jmh-result.json"));
+        }
+        if (!commandLine.getThreads().hasValue()) {
+            options.threads(Integer.getInteger("bench.threads", 1));
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,55 @@
+package recipes.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.dao.DbConnection;
+
+/**
+ * Ops/sec of a trivial query on a pooled connection versus a connection
+ * opened through DriverManager for every call, which is what DbConnection
+ * did before it had a pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    @Benchmark
+    public int pooledConnection() throws SQLException {
+        try (Connection conn = DbConnection.getConnection()) {
+            return selectOne(conn);
+        }
+    }
+
+    @Benchmark
+    public int newConnectionPerCall() throws SQLException {
+        try (Connection conn = DbConnection.openConnection()) {
+            return selectOne(conn);
+        }
+    }
+
+    private int selectOne(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package recipes.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Recipe;
+import recipes.service.IngestResult;
+import recipes.service.RecipeService;
+
+/**
+ * The same workload under each connection profile: the built-in defaults
+ * and the shipped {@code throughput} profile. The profile is switched with
+ * {@link DbConnection#reload()}, the same way a running application picks
+ * up new settings. Most of the driver settings only apply to MySQL, so run
+ * this with {@code -Drecipes.db.url=jdbc:mysql://...} and several threads
+ * ({@code -t 8}) to compare profiles meaningfully.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbProfileBenchmark {
+    private static final int ROW_COUNT = 10_000;
+
+    @Param({ "default", "throughput" })
+    public String profile;
+
+    @Param({ "1000" })
+    public int batchSize;
+
+    private RecipeService service;
+    private List<Recipe> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("recipes.db.profile", profile);
+        DbConnection.reload();
+        service = new RecipeService();
+        BenchmarkDatabase.resetSchema();
+        BenchmarkDatabase.seed(service, ROW_COUNT);
+
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(BenchmarkDatabase.newRecipe(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty("recipes.db.profile");
+        DbConnection.reload();
+    }
+
+    @Benchmark
+    public Recipe pointLookup() {
+        Integer id = 1 + ThreadLocalRandom.current().nextInt(ROW_COUNT);
+        service.getRecipeCache().invalidate(id);
+        return service.fetchRecipeById(id);
+    }
+
+    @Benchmark
+    public IngestResult batchInsert() {
+        return service.addRecipes(batch, batchSize);
+    }
+
+    @Benchmark
+    public void insertThenDelete() {
+        Integer id = service.addRecipe("Short-lived recipe", 1, 1.0, 1.0, null);
+        service.deleteRecipe(id);
+    }
+}
@@ -0,0 +1,100 @@
+package recipes.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.dao.DbConnection;
+import recipes.dao.QueryMetrics;
+import recipes.service.RecipeService;
+
+/**
+ * Cost of statement instrumentation: the same point lookup and short range
+ * read with {@code -Drecipes.db.metrics=true} and {@code false}. The switch
+ * is read once per JVM, so each setting runs in its own fork. Add
+ * {@code -prof gc} to see the per-execution allocation of the statement and
+ * result-set proxies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryMetricsBenchmark {
+    private static final int ROW_COUNT = 10_000;
+    private static final int RANGE_ROWS = 50;
+    private static final String LOOKUP_SQL = "SELECT recipe_name FROM recipe WHERE recipe_id = ?";
+    private static final String RANGE_SQL =
+        "SELECT recipe_name FROM recipe WHERE recipe_id >= ? ORDER BY recipe_id LIMIT " + RANGE_ROWS;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.resetSchema();
+        BenchmarkDatabase.seed(new RecipeService(), ROW_COUNT);
+        QueryMetrics.reset();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Drecipes.db.metrics=true")
+    public String pointLookupWithMetrics() throws SQLException {
+        return pointLookup();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Drecipes.db.metrics=false")
+    public String pointLookupWithoutMetrics() throws SQLException {
+        return pointLookup();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Drecipes.db.metrics=true")
+    public int rangeReadWithMetrics() throws SQLException {
+        return rangeRead();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Drecipes.db.metrics=false")
+    public int rangeReadWithoutMetrics() throws SQLException {
+        return rangeRead();
+    }
+
+    private String pointLookup() throws SQLException {
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOOKUP_SQL)) {
+            stmt.setInt(1, 1 + ThreadLocalRandom.current().nextInt(ROW_COUNT));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private int rangeRead() throws SQLException {
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RANGE_SQL)) {
+            stmt.setInt(1, 1 + ThreadLocalRandom.current().nextInt(ROW_COUNT - RANGE_ROWS));
+            int length = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    length += rs.getString(1).length();
+                }
+            }
+            return length;
+        }
+    }
+}
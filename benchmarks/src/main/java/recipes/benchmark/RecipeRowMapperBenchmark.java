@@ -0,0 +1,77 @@
+package recipes.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import recipes.dao.DbConnection;
+import recipes.dao.RecipeRowMapper;
+import recipes.entity.Recipe;
+import recipes.service.RecipeService;
+
+/**
+ * Full-table scan cost of {@link RecipeRowMapper} against the old
+ * {@code SELECT *} plus column-name lookup per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecipeRowMapperBenchmark {
+    @Param({ "1000000" })
+    public int rowCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.resetSchema();
+        BenchmarkDatabase.seed(new RecipeService(), rowCount);
+    }
+
+    @Benchmark
+    public void indexMapper(Blackhole blackhole) throws SQLException {
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe");
+             ResultSet rs = stmt.executeQuery()) {
+            RecipeRowMapper mapper = new RecipeRowMapper(rs);
+            while (rs.next()) {
+                blackhole.consume(mapper.map(rs));
+            }
+        }
+    }
+
+    @Benchmark
+    public void columnNameLookup(Blackhole blackhole) throws SQLException {
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM recipe");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Recipe recipe = new Recipe();
+                recipe.setId(rs.getInt("recipe_id"));
+                recipe.setRecipeName(rs.getString("recipe_name"));
+                recipe.setNumServings(rs.getInt("num_serving"));
+                recipe.setPrepTime(rs.getDouble("prep_time"));
+                recipe.setCookTime(rs.getDouble("cook_time"));
+                recipe.setNotes(rs.getString("notes"));
+                blackhole.consume(recipe);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package recipes.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.entity.Recipe;
+import recipes.service.IngestResult;
+import recipes.service.RecipeService;
+
+/**
+ * Throughput of the public RecipeService operations against a table seeded
+ * with {@code rowCount} recipes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeServiceBenchmark {
+    @Param({ "1000", "100000" })
+    public int rowCount;
+
+    private RecipeService service;
+
+    /**
+     * A fresh batch for every {@link #batchInsert} call. Kept in its own
+     * state so the per-invocation setup, and the timing overhead JMH adds
+     * for it, applies to that benchmark only.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        @Param({ "1000" })
+        public int batchSize;
+
+        private List<Recipe> recipes;
+
+        @Setup(Level.Invocation)
+        public void prepare() {
+            recipes = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                recipes.add(BenchmarkDatabase.newRecipe(i));
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new RecipeService();
+        BenchmarkDatabase.resetSchema();
+        BenchmarkDatabase.seed(service, rowCount);
+    }
+
+    @Benchmark
+    public Integer singleInsert() {
+        return service.addRecipe("Benchmark recipe", 4, 10.0, 20.0, "Inserted by benchmark");
+    }
+
+    @Benchmark
+    public IngestResult batchInsert(Batch batch) {
+        return service.addRecipes(batch.recipes, batch.batchSize);
+    }
+
+    @Benchmark
+    public Recipe pointLookupCached() {
+        return service.fetchRecipeById(randomId());
+    }
+
+    @Benchmark
+    public Recipe pointLookupUncached() {
+        Integer id = randomId();
+        service.getRecipeCache().invalidate(id);
+        return service.fetchRecipeById(id);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        return service.fetchAllRecipes().size();
+    }
+
+    @Benchmark
+    public void update() {
+        Recipe recipe = BenchmarkDatabase.newRecipe(ThreadLocalRandom.current().nextInt(1_000));
+        recipe.setId(randomId());
+        service.modifyRecipeDetails(recipe);
+    }
+
+    @Benchmark
+    public void insertThenDelete() {
+        Integer id = service.addRecipe("Short-lived recipe", 1, 1.0, 1.0, null);
+        service.deleteRecipe(id);
+    }
+
+    private Integer randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(rowCount);
+    }
+}
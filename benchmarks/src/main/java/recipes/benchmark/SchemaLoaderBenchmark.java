@@ -0,0 +1,58 @@
+package recipes.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.service.SqlScriptParser;
+
+/**
+ * Cost of turning a SQL script into statements with {@link SqlScriptParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchemaLoaderBenchmark {
+    @Param({ "100", "10000" })
+    public int statementCount;
+
+    private String script;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < statementCount; i++) {
+            builder.append("-- recipe ").append(i).append('\n')
+                .append("INSERT INTO recipe (recipe_name, notes, num_serving, prep_time, cook_time) VALUES\n")
+                .append("  ('Recipe ").append(i).append("', 'Some notes', 4, 15.0, 20.0);\n\n");
+        }
+        script = builder.toString();
+    }
+
+    @Benchmark
+    public int parseScript() {
+        int count = 0;
+        try (SqlScriptParser parser = new SqlScriptParser(new StringReader(script))) {
+            while (parser.hasNext()) {
+                parser.next();
+                count++;
+            }
+        }
+        return count;
+    }
+}
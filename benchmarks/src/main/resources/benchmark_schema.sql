@@ -0,0 +1,13 @@
+-- Minimal recipe table used by the benchmarks. Works on MySQL and on H2 in MySQL mode.
+DROP TABLE IF EXISTS recipe;
+
+CREATE TABLE recipe (
+  recipe_id INT AUTO_INCREMENT NOT NULL,
+  recipe_name VARCHAR(128) NOT NULL,
+  notes TEXT,
+  num_serving INT,
+  prep_time DOUBLE,
+  cook_time DOUBLE,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (recipe_id)
+);
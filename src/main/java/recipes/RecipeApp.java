@@ -1,14 +1,31 @@
 package recipes;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
 
+import recipes.entity.Ingredient;
 import recipes.entity.Recipe;
+import recipes.entity.Unit;
+import recipes.service.ImportFormat;
+import recipes.service.IndexAdvice;
+import recipes.service.ImportResult;
+import recipes.service.RecipePage;
 import recipes.service.RecipeService;
+import recipes.service.RecipeStats;
+import recipes.service.ScriptLoader;
 import recipes.exception.DbException;
 
 public class RecipeApp {
+    private static final int PAGE_SIZE = 20;
+
     private Scanner scanner = new Scanner(System.in);
     private RecipeService recipeService = new RecipeService();
     private Recipe currentRecipe;
@@ -20,7 +37,11 @@ public class RecipeApp {
         "4) Select current recipe",
         "5) Add ingredient to current recipe",
         "6) Update recipe details",
-        "7) Delete a recipe"
+        "7) Delete a recipe",
+        "8) Import a CSV/TSV file",
+        "9) Search recipes",
+        "10) Run the index advisor",
+        "11) Show recipe statistics"
     );
 
     public static void main(String[] args) {
@@ -29,6 +50,13 @@ public class RecipeApp {
 
     private void displayMenu() {
         boolean done = false;
+        recipeService.setScriptProgressListener(RecipeApp::printScriptProgress);
+
+        try {
+            recipeService.preloadReferenceData();
+        } catch (DbException e) {
+            // No tables yet; creating them loads the reference data
+        }
 
         while (!done) {
             int operation = getOperation();
@@ -58,6 +86,18 @@ public class RecipeApp {
                     case 7:
                         deleteRecipe();
                         break;
+                    case 8:
+                        importFile();
+                        break;
+                    case 9:
+                        searchRecipes();
+                        break;
+                    case 10:
+                        runIndexAdvisor();
+                        break;
+                    case 11:
+                        showStatistics();
+                        break;
                     default:
                         System.out.println("\n" + operation + " is not valid. Try again.");
                         break;
@@ -68,6 +108,11 @@ public class RecipeApp {
         }
     }
 
+    private static void printScriptProgress(String scriptName, long committed, long skipped, long elapsedMillis) {
+        System.out.printf("%s: %,d statements committed (%,.0f statements/s)%n", scriptName, committed,
+            ScriptLoader.statementsPerSecond(committed - skipped, elapsedMillis));
+    }
+
     private void createTables() {
         recipeService.createAndPopulatedTables();
         System.out.println("\nTables created and populated!");
@@ -113,27 +158,84 @@ public class RecipeApp {
     }
 
     private void listRecipes() {
-        List<Recipe> recipes = recipeService.fetchAllRecipes();
-        
-        if (recipes.isEmpty()) {
+        RecipePage page = recipeService.fetchRecipesPageAfterToken(null, PAGE_SIZE);
+
+        if (page.getRecipes().isEmpty()) {
             System.out.println("\nNo recipes found. Create some recipes first!");
             return;
         }
-        
+
         System.out.println("\n=== Available Recipes ===");
-        for (Recipe recipe : recipes) {
-            System.out.printf("ID: %-3d | %-30s", recipe.getId(), recipe.getRecipeName());
-            if (recipe.getNumServings() != null) {
-                System.out.printf(" | Servings: %-2d", recipe.getNumServings());
+        while (true) {
+            page.getRecipes().forEach(this::printRecipeLine);
+
+            if (!page.hasNextPage()) {
+                break;
             }
-            if (recipe.getPrepTime() != null && recipe.getCookTime() != null) {
-                System.out.printf(" | Time: %.0f + %.0f min", recipe.getPrepTime(), recipe.getCookTime());
+            String answer = getStringInput("-- More recipes: press Enter to continue or q to stop");
+            if (answer != null && answer.equalsIgnoreCase("q")) {
+                break;
             }
-            System.out.println();
+            page = recipeService.fetchRecipesPageAfterToken(page.getNextPageToken(), PAGE_SIZE);
+        }
+        System.out.println("=========================");
+    }
+
+    private void searchRecipes() {
+        String query = getStringInput("\nEnter search words (end a word with * to match by prefix)");
+        if (query == null) {
+            return;
+        }
+
+        List<Recipe> matches = recipeService.searchRecipes(query, PAGE_SIZE);
+        if (matches.isEmpty()) {
+            System.out.println("No recipes match '" + query + "'.");
+            return;
+        }
+
+        System.out.println("\n=== Recipes matching '" + query + "' ===");
+        matches.forEach(this::printRecipeLine);
+        if (matches.size() == PAGE_SIZE) {
+            System.out.println("(showing the first " + PAGE_SIZE + " matches)");
+        }
+        System.out.println("=========================");
+    }
+
+    private void runIndexAdvisor() {
+        List<IndexAdvice> findings = recipeService.adviseIndexes();
+        if (findings.isEmpty()) {
+            System.out.println("\nNo full scans found in the statements run so far.");
+            return;
         }
+
+        System.out.println("\n=== Index advisor ===");
+        findings.forEach(System.out::println);
+        System.out.println("=====================");
+    }
+
+    private void showStatistics() {
+        RecipeStats stats = recipeService.getStats();
+        System.out.println("\n=== Recipe statistics ===");
+        System.out.println("Recipes: " + stats.getRecipeCount());
+        System.out.println("Recipes per category: " + stats.getRecipesPerCategory());
+        System.out.println("Servings: " + stats.getServingsDistribution());
+        System.out.println("Prep time: " + stats.getPrepTimeDistribution());
+        System.out.println("Cook time: " + stats.getCookTimeDistribution());
+        System.out.println("Top ingredients: " + stats.getTopIngredients(10));
         System.out.println("=========================");
     }
 
+    private void printRecipeLine(Recipe recipe) {
+        System.out.printf("ID: %-3d | %-30s", recipe.getId(), recipe.getRecipeName());
+        if (recipe.getNumServings() != null) {
+            System.out.printf(" | Servings: %-2d", recipe.getNumServings());
+        }
+        if (recipe.getPrepTime() != null && recipe.getCookTime() != null) {
+            System.out.printf(" | Time: %.0f + %.0f min", recipe.getPrepTime(), recipe.getCookTime());
+        }
+        System.out.println();
+    }
+
     private void setCurrentRecipe() {
         listRecipes();
 
@@ -191,15 +293,54 @@ public class RecipeApp {
             return;
         }
 
-        System.out.println("\n--- Add Ingredient to: " + currentRecipe.getRecipeName() + " ---");
-        System.out.println("Feature not fully implemented yet.");
-        System.out.println("This would allow you to add ingredients to the current recipe.");
-        
-        // Placeholder for future ingredient functionality
-        String ingredientName = getStringInput("Enter ingredient name");
-        if (ingredientName != null) {
-            System.out.println("Ingredient '" + ingredientName + "' would be added to " + currentRecipe.getRecipeName());
-            System.out.println("(This is just a preview - actual database insertion not implemented yet)");
+        System.out.println("\n--- Add Ingredients to: " + currentRecipe.getRecipeName() + " ---");
+        System.out.println("Press Enter at the ingredient name to finish.");
+
+        List<Ingredient> ingredients = new ArrayList<>();
+        while (true) {
+            String ingredientName = getStringInput("\nEnter ingredient name");
+            if (ingredientName == null) {
+                break;
+            }
+            String instruction = getStringInput("Enter instruction (e.g. chopped, optional)");
+
+            BigDecimal amount;
+            try {
+                Double value = getDoubleInput("Enter amount (optional)");
+                amount = value == null ? null : BigDecimal.valueOf(value);
+            } catch (DbException e) {
+                System.out.println(e.getMessage() + " Ingredient skipped.");
+                continue;
+            }
+
+            Unit unit = null;
+            String unitName = getStringInput("Enter unit (optional, e.g. cup, tablespoons)");
+            if (unitName != null) {
+                try {
+                    unit = recipeService.findUnit(unitName);
+                } catch (DbException e) {
+                    System.out.println("Error looking up units: " + e.getMessage());
+                    return;
+                }
+                if (unit == null) {
+                    System.out.println("Unknown unit '" + unitName + "'. Ingredient skipped.");
+                    continue;
+                }
+            }
+
+            ingredients.add(new Ingredient(ingredientName, instruction, amount, unit));
+        }
+
+        if (ingredients.isEmpty()) {
+            System.out.println("No ingredients added.");
+            return;
+        }
+
+        try {
+            recipeService.addIngredients(currentRecipe.getId(), ingredients);
+            System.out.println("\nAdded " + ingredients.size() + " ingredient(s) to " + currentRecipe.getRecipeName() + ".");
+        } catch (DbException e) {
+            System.out.println("Error adding ingredients: " + e.getMessage());
         }
     }
 
@@ -297,6 +438,46 @@ public class RecipeApp {
         }
     }
 
+    private void importFile() {
+        System.out.println("\n--- Import a CSV/TSV File ---");
+
+        String fileName = getStringInput("Enter the path of the file to import");
+        if (fileName == null) {
+            System.out.println("No file entered.");
+            return;
+        }
+
+        String table = getStringInput("Enter the table to import into (recipe, ingredient, step, unit, category)");
+        if (table == null) {
+            System.out.println("No table entered.");
+            return;
+        }
+
+        String columnInput = getStringInput("Enter the column for each field, comma separated (- to skip a field)");
+        if (columnInput == null) {
+            System.out.println("No columns entered.");
+            return;
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : columnInput.split(",")) {
+            String trimmed = column.trim();
+            columns.add(trimmed.equals("-") ? null : trimmed);
+        }
+
+        ImportFormat format = fileName.toLowerCase().endsWith(".tsv") ? ImportFormat.TSV : ImportFormat.CSV;
+        boolean skipHeader = "yes".equalsIgnoreCase(getStringInput("Does the file have a header line? (yes/no)"));
+
+        try (InputStream data = new BufferedInputStream(Files.newInputStream(Paths.get(fileName)))) {
+            ImportResult result = recipeService.importFile(table, columns, data, format, skipHeader);
+            System.out.println("\nImported " + result.getLoadedCount() + " rows"
+                + (result.isLocalInfile() ? " with LOAD DATA LOCAL INFILE" : " with batched inserts")
+                + ", rejected " + result.getRejectedCount() + ".");
+            result.getMessages().stream().limit(10).forEach(message -> System.out.println("  " + message));
+        } catch (IOException e) {
+            throw new DbException("Could not read " + fileName, e);
+        }
+    }
+
     private boolean exitMenu() {
         System.out.println("\nExiting the Recipe Manager. TTFN!");
         return true;
@@ -0,0 +1,436 @@
+package recipes.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import recipes.exception.DbException;
+
+/**
+ * A small bounded pool of physical JDBC connections.
+ *
+ * Callers borrow a connection with {@link #borrow()} and give it back by calling
+ * {@code close()} on it, so existing try-with-resources blocks work unchanged.
+ * A background housekeeper evicts idle connections above the minimum size, tops
+ * the pool back up to the minimum and reports connections held for longer than
+ * the leak detection threshold.
+ *
+ * A returned connection is rolled back and put back in autocommit mode. If the
+ * borrower changed its read-only flag, isolation level, catalog or schema
+ * through the JDBC setters, those are restored to the values the connection
+ * was opened with; a connection that cannot be restored is closed instead.
+ * Changes made with SQL ({@code SET TRANSACTION ...}, {@code USE ...}) are
+ * not seen, so callers must not make them on pooled connections.
+ *
+ * Each physical connection carries its own {@link StatementCache}, so
+ * {@code prepareStatement(sql)} on a borrowed connection reuses statements
+ * prepared by earlier borrowers. Statements are also wrapped to report to
+ * {@link QueryMetrics}, and the time spent waiting in {@code borrow()} is
+ * recorded there too.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 5_000;
+
+    /** Opens a new physical connection. */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<Entry> idle = new LinkedBlockingDeque<>();
+    private final Set<Entry> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long acquireTimeoutMillis,
+            long idleTimeoutMillis, long leakDetectionThresholdMillis, int validationTimeoutSeconds,
+            int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recipes-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fillToMinimum();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD_MILLIS,
+            HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquire timeout for one to become
+     * available. Idle connections are validated before they are handed out.
+     */
+    public Connection borrow() {
+        return borrow(null);
+    }
+
+    /**
+     * Borrows a connection as {@link #borrow()} does and runs
+     * {@code onRelease} once the caller hands it back. If borrowing fails,
+     * {@code onRelease} is not run.
+     */
+    public Connection borrow(Runnable onRelease) {
+        if (closed) {
+            throw new DbException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                if (QueryMetrics.isEnabled()) {
+                    QueryMetrics.recordPoolWait(System.nanoTime() - start, true);
+                }
+                throw new DbException("Timed out after " + acquireTimeoutMillis
+                    + " ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            Entry entry = takeValidIdleEntry();
+            if (entry == null) {
+                entry = createEntry();
+            }
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrowSite = leakDetectionThresholdMillis > 0 ? new Exception("Connection borrowed here") : null;
+            entry.leakReported = false;
+            entry.onRelease = onRelease;
+            borrowed.add(entry);
+            if (QueryMetrics.isEnabled()) {
+                QueryMetrics.recordPoolWait(System.nanoTime() - start, false);
+            }
+            return entry.newHandle();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        Entry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+
+    private Entry takeValidIdleEntry() {
+        Entry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (isValid(entry)) {
+                return entry;
+            }
+            destroy(entry);
+        }
+        return null;
+    }
+
+    private boolean isValid(Entry entry) {
+        try {
+            return entry.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Entry createEntry() {
+        totalConnections.incrementAndGet();
+        try {
+            return newEntry();
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            throw new DbException("Error opening database connection", e);
+        }
+    }
+
+    private void release(Entry entry) {
+        borrowed.remove(entry);
+        entry.borrowSite = null;
+        Runnable onRelease = entry.onRelease;
+        entry.onRelease = null;
+
+        if (closed || !resetForReuse(entry)) {
+            destroy(entry);
+        } else {
+            entry.lastReturnedAt = System.currentTimeMillis();
+            idle.offerFirst(entry);
+        }
+        permits.release();
+        if (onRelease != null) {
+            onRelease.run();
+        }
+    }
+
+    private boolean resetForReuse(Entry entry) {
+        try {
+            Connection conn = entry.connection;
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (entry.stateChanged) {
+                conn.setReadOnly(entry.initialReadOnly);
+                conn.setTransactionIsolation(entry.initialIsolation);
+                if (entry.initialCatalog != null) {
+                    conn.setCatalog(entry.initialCatalog);
+                }
+                if (entry.initialSchema != null) {
+                    conn.setSchema(entry.initialSchema);
+                }
+                entry.stateChanged = false;
+            }
+            conn.clearWarnings();
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            LOG.log(Level.FINE, "Closing a pooled connection that could not be reset", e);
+            return false;
+        }
+    }
+
+    private Entry newEntry() throws SQLException {
+        Connection connection = factory.create();
+        try {
+            return new Entry(connection);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void destroy(Entry entry) {
+        totalConnections.decrementAndGet();
+        if (entry.statementCache != null) {
+            entry.statementCache.closeAll();
+        }
+        try {
+            entry.connection.close();
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    // Package-private so tests can run it without waiting for the timer
+    void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Connection pool housekeeping failed", e);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<Entry> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            Entry entry = it.next();
+            if (entry.lastReturnedAt < cutoff && idle.remove(entry)) {
+                destroy(entry);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        int total;
+        while (!closed && (total = totalConnections.get()) < minSize) {
+            if (!totalConnections.compareAndSet(total, total + 1)) {
+                continue;
+            }
+            try {
+                Entry entry = newEntry();
+                entry.lastReturnedAt = System.currentTimeMillis();
+                idle.offerLast(entry);
+            } catch (SQLException e) {
+                totalConnections.decrementAndGet();
+                LOG.log(Level.WARNING, "Could not pre-open pooled connection", e);
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdMillis <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - leakDetectionThresholdMillis;
+        for (Entry entry : borrowed) {
+            Exception site = entry.borrowSite;
+            if (!entry.leakReported && site != null && entry.borrowedAt < cutoff) {
+                entry.leakReported = true;
+                LOG.log(Level.WARNING, "Possible connection leak: connection held for more than "
+                    + leakDetectionThresholdMillis + " ms", site);
+            }
+        }
+    }
+
+    /** A physical connection owned by the pool. */
+    private class Entry {
+        private final Connection connection;
+        private final StatementCache statementCache;
+        private final boolean initialReadOnly;
+        private final int initialIsolation;
+        private final String initialCatalog;
+        private final String initialSchema;
+        // Set when a borrower calls one of the setters that resetForReuse undoes
+        private volatile boolean stateChanged;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Exception borrowSite;
+        private volatile boolean leakReported;
+        private volatile Runnable onRelease;
+
+        private Entry(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.initialReadOnly = connection.isReadOnly();
+            this.initialIsolation = connection.getTransactionIsolation();
+            this.initialCatalog = connection.getCatalog();
+            this.initialSchema = connection.getSchema();
+            this.statementCache = statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize) : null;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Handle(this));
+        }
+    }
+
+    /**
+     * The connection handed to callers. Closing it returns the physical
+     * connection to the pool; any other call after that fails.
+     */
+    private class Handle implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + entry.connection;
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            switch (method.getName()) {
+                case "prepareStatement":
+                    SqlCatalog.record((String) args[0]);
+                    break;
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                case "setCatalog":
+                case "setSchema":
+                    entry.stateChanged = true;
+                    break;
+                default:
+                    break;
+            }
+            Object result = delegate(proxy, method, args);
+            if (result instanceof Statement && QueryMetrics.isEnabled()) {
+                String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+                return InstrumentedStatement.wrap((Statement) result, (Connection) proxy, sql);
+            }
+            return result;
+        }
+
+        private Object delegate(Object proxy, Method method, Object[] args) throws Throwable {
+            if (entry.statementCache != null && method.getName().equals("prepareStatement")) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return entry.statementCache.prepare((Connection) proxy, (String) args[0], null);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return entry.statementCache.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+
+            try {
+                return method.invoke(entry.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
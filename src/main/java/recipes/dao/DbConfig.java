@@ -0,0 +1,443 @@
+package recipes.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import recipes.exception.DbException;
+
+/**
+ * Database connection, pool and driver settings, loaded once and validated.
+ *
+ * Every setting is a {@code recipes.db.*} key. Later sources override
+ * earlier ones:
+ * <ol>
+ * <li>built-in defaults</li>
+ * <li>the profile named by {@code recipes.db.profile}, read from
+ *     {@code db-profile-<name>.properties} on the classpath</li>
+ * <li>the file named by {@code recipes.db.config}, or
+ *     {@code recipes-db.properties} on the classpath</li>
+ * <li>environment variables, with the key upper-cased and dots turned into
+ *     underscores ({@code RECIPES_DB_PASSWORD})</li>
+ * <li>system properties</li>
+ * </ol>
+ *
+ * Credentials and {@code recipes.db.driver.*} settings are passed to the
+ * driver as connection properties, never as part of the URL, so they stay
+ * out of logs and error messages. Driver settings are only passed to MySQL
+ * URLs.
+ */
+public final class DbConfig {
+    public static final String PREFIX = "recipes.db.";
+    private static final String DRIVER_PREFIX = PREFIX + "driver.";
+    private static final String DEFAULT_CONFIG_RESOURCE = "recipes-db.properties";
+
+    // Connector/J performance settings that can also be given as environment variables
+    private static final List<String> KNOWN_DRIVER_PROPERTIES = Arrays.asList("useSSL", "useServerPrepStmts",
+        "cachePrepStmts", "prepStmtCacheSize", "prepStmtCacheSqlLimit", "rewriteBatchedStatements",
+        "useLocalSessionState", "elideSetAutoCommits", "cacheServerConfiguration", "cacheResultSetMetadata",
+        "maintainTimeStats", "tcpKeepAlive", "tcpNoDelay", "tcpRcvBuf", "tcpSndBuf", "connectTimeout",
+        "socketTimeout");
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("host", "localhost");
+        DEFAULTS.put("port", "3306");
+        DEFAULTS.put("schema", "recipes");
+        DEFAULTS.put("minPoolSize", "2");
+        DEFAULTS.put("maxPoolSize", "10");
+        DEFAULTS.put("acquireTimeoutMillis", "30000");
+        DEFAULTS.put("idleTimeoutMillis", "600000");
+        DEFAULTS.put("leakDetectionThresholdMillis", "60000");
+        DEFAULTS.put("validationTimeoutSeconds", "2");
+        DEFAULTS.put("statementCacheSize", "64");
+        DEFAULTS.put("replicaUrls", "");
+        DEFAULTS.put("readYourWritesMillis", "10000");
+        DEFAULTS.put("maxReplicaLagSeconds", "5");
+        DEFAULTS.put("replicaCheckMillis", "5000");
+        DEFAULTS.put("replicaLagCheck", "true");
+        DEFAULTS.put("slowQueryMillis", "500");
+        DEFAULTS.put("reloadCheckMillis", "0");
+        DEFAULTS.put("fullTextIndexes", "false");
+        DEFAULTS.put("driver.useSSL", "false");
+        DEFAULTS.put("driver.useServerPrepStmts", "true");
+        DEFAULTS.put("driver.rewriteBatchedStatements", "true");
+    }
+
+    private final String profile;
+    private final Path configFile;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Map<String, String> driverProperties;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final List<String> replicaUrls;
+    private final long readYourWritesMillis;
+    private final long maxReplicaLagSeconds;
+    private final long replicaCheckMillis;
+    private final boolean replicaLagCheck;
+    private final long slowQueryMillis;
+    private final long reloadCheckMillis;
+    private final boolean fullTextIndexes;
+
+    private DbConfig(Map<String, String> settings, String profile, Path configFile) {
+        List<String> problems = new ArrayList<>();
+        Parser parser = new Parser(settings, problems);
+
+        this.profile = profile;
+        this.configFile = configFile;
+        String explicitUrl = settings.get("url");
+        if (explicitUrl == null || explicitUrl.trim().isEmpty()) {
+            int port = parser.intValue("port", 1, 65_535);
+            this.url = "jdbc:mysql://" + settings.get("host") + ":" + port + "/" + settings.get("schema");
+            // The local development database; a real deployment sets its own
+            this.user = settings.getOrDefault("user", "recipes");
+            this.password = settings.getOrDefault("password", "recipes");
+        } else {
+            this.url = explicitUrl.trim();
+            this.user = settings.get("user");
+            this.password = settings.get("password");
+        }
+
+        Map<String, String> driver = new LinkedHashMap<>();
+        settings.forEach((key, value) -> {
+            if (key.startsWith("driver.")) {
+                driver.put(key.substring("driver.".length()), value);
+            }
+        });
+        this.driverProperties = Collections.unmodifiableMap(driver);
+
+        this.minPoolSize = parser.intValue("minPoolSize", 0, 1_000);
+        this.maxPoolSize = parser.intValue("maxPoolSize", 1, 1_000);
+        this.acquireTimeoutMillis = parser.longValue("acquireTimeoutMillis", 1);
+        this.idleTimeoutMillis = parser.longValue("idleTimeoutMillis", 1);
+        this.leakDetectionThresholdMillis = parser.longValue("leakDetectionThresholdMillis", 0);
+        this.validationTimeoutSeconds = parser.intValue("validationTimeoutSeconds", 0, 3_600);
+        this.statementCacheSize = parser.intValue("statementCacheSize", 0, 100_000);
+        this.readYourWritesMillis = parser.longValue("readYourWritesMillis", 0);
+        this.maxReplicaLagSeconds = parser.longValue("maxReplicaLagSeconds", 0);
+        this.replicaCheckMillis = parser.longValue("replicaCheckMillis", 1);
+        this.replicaLagCheck = parser.booleanValue("replicaLagCheck");
+        this.slowQueryMillis = parser.longValue("slowQueryMillis", 0);
+        this.reloadCheckMillis = parser.longValue("reloadCheckMillis", 0);
+        this.fullTextIndexes = parser.booleanValue("fullTextIndexes");
+
+        List<String> replicas = new ArrayList<>();
+        for (String replica : settings.getOrDefault("replicaUrls", "").split(",")) {
+            if (!replica.trim().isEmpty()) {
+                replicas.add(replica.trim());
+            }
+        }
+        this.replicaUrls = Collections.unmodifiableList(replicas);
+
+        if (!url.startsWith("jdbc:")) {
+            problems.add("url must start with jdbc:");
+        }
+        if (problems.isEmpty() && minPoolSize > maxPoolSize) {
+            problems.add("minPoolSize (" + minPoolSize + ") is larger than maxPoolSize (" + maxPoolSize + ")");
+        }
+        if (problems.isEmpty() && !replicaUrls.isEmpty()
+                && readYourWritesMillis < ReplicaRouter.minStickyMillis(maxReplicaLagSeconds, replicaCheckMillis)) {
+            problems.add("readYourWritesMillis (" + readYourWritesMillis + ") must cover maxReplicaLagSeconds plus"
+                + " replicaCheckMillis (" + ReplicaRouter.minStickyMillis(maxReplicaLagSeconds, replicaCheckMillis)
+                + " ms), or reads just after a write can reach a stale replica");
+        }
+        if (driverProperties.containsKey("allowLoadLocalInfile") || url.contains("allowLoadLocalInfile")) {
+            problems.add("allowLoadLocalInfile lets the server read any file this client can; it is never set on"
+                + " pooled connections, only on the one CsvImporter opens for each load");
+        }
+        if (reloadCheckMillis > 0 && configFile == null) {
+            problems.add("reloadCheckMillis needs a config file named by " + PREFIX + "config");
+        }
+        if (!problems.isEmpty()) {
+            throw new DbException("Invalid database configuration: " + String.join("; ", problems));
+        }
+    }
+
+    /** Loads the configuration from all sources, in order of precedence. */
+    public static DbConfig load() {
+        Map<String, String> env = System.getenv();
+        Properties system = System.getProperties();
+
+        String configPath = lookup("config", system, env, null);
+        Path configFile = configPath == null ? null : Paths.get(configPath);
+        Map<String, String> fileSettings = configFile == null
+            ? readResource(DEFAULT_CONFIG_RESOURCE, false)
+            : readFile(configFile);
+
+        String profile = lookup("profile", system, env, fileSettings.get("profile"));
+        Map<String, String> settings = new LinkedHashMap<>(DEFAULTS);
+        if (profile != null && !profile.isEmpty() && !profile.equals("default")) {
+            settings.putAll(readResource("db-profile-" + profile + ".properties", true));
+        }
+        settings.putAll(fileSettings);
+
+        List<String> keys = new ArrayList<>(settings.keySet());
+        keys.addAll(Arrays.asList("url", "user", "password"));
+        for (String driverProperty : KNOWN_DRIVER_PROPERTIES) {
+            keys.add("driver." + driverProperty);
+        }
+        for (String key : keys) {
+            String value = env.get(environmentName(key));
+            if (value != null) {
+                settings.put(key, value);
+            }
+        }
+        for (String name : system.stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                settings.put(name.substring(PREFIX.length()), system.getProperty(name));
+            }
+        }
+        settings.remove("config");
+        settings.remove("profile");
+        return new DbConfig(settings, profile == null || profile.isEmpty() ? "default" : profile, configFile);
+    }
+
+    /**
+     * Builds a configuration from {@code recipes.db.*} properties on top of
+     * the built-in defaults, ignoring the environment and any files.
+     */
+    public static DbConfig fromProperties(Properties properties) {
+        Map<String, String> settings = new LinkedHashMap<>(DEFAULTS);
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                settings.put(name.substring(PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        return new DbConfig(settings, "default", null);
+    }
+
+    /**
+     * Returns the properties to open a connection to {@code jdbcUrl} with:
+     * credentials, plus the driver settings when the URL is a MySQL one.
+     */
+    public Properties connectionProperties(String jdbcUrl) {
+        Properties properties = new Properties();
+        if (user != null) {
+            properties.setProperty("user", user);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        if (jdbcUrl.startsWith("jdbc:mysql:")) {
+            properties.putAll(driverProperties);
+        }
+        return properties;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /** The file this configuration was read from, or {@code null}. */
+    public Path getConfigFile() {
+        return configFile;
+    }
+
+    /** The JDBC URL of the primary, without credentials. */
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public Map<String, String> getDriverProperties() {
+        return driverProperties;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public List<String> getReplicaUrls() {
+        return replicaUrls;
+    }
+
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+
+    public long getMaxReplicaLagSeconds() {
+        return maxReplicaLagSeconds;
+    }
+
+    public long getReplicaCheckMillis() {
+        return replicaCheckMillis;
+    }
+
+    /**
+     * Whether a replica must report its replication lag to stay in
+     * rotation. On by default; turn it off only for replicas that cannot
+     * report lag at all, such as a standalone stand-in database.
+     */
+    public boolean isReplicaLagCheck() {
+        return replicaLagCheck;
+    }
+
+    public long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    /** How often the config file is checked for changes; 0 turns hot reload off. */
+    public long getReloadCheckMillis() {
+        return reloadCheckMillis;
+    }
+
+    /**
+     * Whether schema migrations add the MySQL FULLTEXT indexes that
+     * {@code FullTextRecipeSearch} needs. Off by default, since every
+     * insert and update then maintains them too.
+     */
+    public boolean isFullTextIndexes() {
+        return fullTextIndexes;
+    }
+
+    @Override
+    public String toString() {
+        return "DbConfig{profile=" + profile + ", url=" + url + ", user=" + user
+            + ", password=" + (password == null ? "none" : "****")
+            + ", pool=" + minPoolSize + ".." + maxPoolSize + ", statementCacheSize=" + statementCacheSize
+            + ", replicas=" + replicaUrls.size() + ", driver=" + driverProperties + "}";
+    }
+
+    private static String lookup(String key, Properties system, Map<String, String> env, String fallback) {
+        String value = system.getProperty(PREFIX + key);
+        if (value == null) {
+            value = env.get(environmentName(key));
+        }
+        return value == null ? fallback : value.trim();
+    }
+
+    private static String environmentName(String key) {
+        return (PREFIX + key).toUpperCase(Locale.ROOT).replace('.', '_');
+    }
+
+    private static Map<String, String> readResource(String name, boolean required) {
+        InputStream in = DbConfig.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            if (required) {
+                throw new DbException("Unknown database profile: " + name + " is not on the classpath");
+            }
+            return Collections.emptyMap();
+        }
+        try (InputStream stream = in) {
+            Properties properties = new Properties();
+            properties.load(stream);
+            return settingsOf(properties);
+        } catch (IOException e) {
+            throw new DbException("Error reading " + name, e);
+        }
+    }
+
+    private static Map<String, String> readFile(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            return settingsOf(properties);
+        } catch (IOException e) {
+            throw new DbException("Error reading database configuration " + file, e);
+        }
+    }
+
+    /** Strips the {@code recipes.db.} prefix; keys without it are ignored. */
+    private static Map<String, String> settingsOf(Properties properties) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                settings.put(name.substring(PREFIX.length()), properties.getProperty(name).trim());
+            }
+        }
+        return settings;
+    }
+
+    /** Parses numeric and boolean settings, collecting every problem instead of stopping at the first. */
+    private static final class Parser {
+        private final Map<String, String> settings;
+        private final List<String> problems;
+
+        private Parser(Map<String, String> settings, List<String> problems) {
+            this.settings = settings;
+            this.problems = problems;
+        }
+
+        private int intValue(String key, int min, int max) {
+            long value = longValue(key, min);
+            if (value > max) {
+                problems.add(PREFIX + key + " must be at most " + max + ", not " + value);
+                return max;
+            }
+            return (int) value;
+        }
+
+        private boolean booleanValue(String key) {
+            String text = settings.get(key);
+            if ("true".equalsIgnoreCase(text.trim())) {
+                return true;
+            }
+            if (!"false".equalsIgnoreCase(text.trim())) {
+                problems.add(PREFIX + key + " must be true or false, not " + text);
+            }
+            return false;
+        }
+
+        private long longValue(String key, long min) {
+            String text = settings.get(key);
+            try {
+                long value = Long.parseLong(text.trim());
+                if (value < min) {
+                    problems.add(PREFIX + key + " must be at least " + min + ", not " + value);
+                    return min;
+                }
+                return value;
+            } catch (NumberFormatException | NullPointerException e) {
+                problems.add(PREFIX + key + " is not a number: " + text);
+                return min;
+            }
+        }
+    }
+}
@@ -1,30 +1,338 @@
 package recipes.dao;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import recipes.exception.DbException;
 
+/**
+ * The shared connection pools, built from a {@link DbConfig}.
+ *
+ * The configuration is loaded and validated once, on first use. Call
+ * {@link #reload()}, or set {@code recipes.db.reloadCheckMillis} to have the
+ * config file watched, to apply new pool and driver settings at runtime: new
+ * pools are built from the new configuration and swapped in, and the old ones
+ * drain as their borrowed connections are returned.
+ *
+ * One shutdown hook closes the pools when the JVM exits. Anything that
+ * still has to write on the way out, such as a write-behind queue, is
+ * registered with {@link #closeBeforeShutdown(AutoCloseable)} and closed by
+ * that hook first, while the pools are still open.
+ */
 public class DbConnection {
-    private static final String SCHEMA = "recipes";
-    private static final String USER = "recipes";
-    private static final String PASSWORD = "recipes";
-    private static final String HOST = "localhost";
-    private static final int PORT = 3306;
+    private static final Logger LOG = Logger.getLogger(DbConnection.class.getName());
 
+    private static volatile DbConfig config;
+    private static volatile ConnectionPool pool;
+    private static volatile ReplicaRouter router;
+    private static ScheduledExecutorService configWatcher;
+    private static Path watchedFile;
+    private static long watchPeriodMillis;
+    private static boolean shutdownHookAdded;
+    private static final List<AutoCloseable> beforeShutdown = new CopyOnWriteArrayList<>();
+
+    /**
+     * Borrows a connection to the primary from the shared pool. Closing the
+     * returned connection hands it back to the pool instead of closing the
+     * socket. Use this for writes, transactions and reads that must see the
+     * latest data; reads stay on the primary for a short while after it is
+     * returned, so this process always reads its own writes.
+     */
     public static Connection getConnection() {
-        String url = String.format(
-            "jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false",
-            HOST, PORT, SCHEMA, USER, PASSWORD);
+        return getRouter().getWriteConnection();
+    }
 
-        try {
-            Connection conn = DriverManager.getConnection(url);
-            System.out.println("Connected");   // Only this prints on success
-            return conn;
+    /**
+     * Borrows a connection for a read-only query. With replicas configured
+     * it comes from a healthy replica, unless this process wrote recently;
+     * otherwise it comes from the primary pool.
+     */
+    public static Connection getReadConnection() {
+        return getRouter().getReadConnection();
+    }
+
+    /** The configuration in effect, loading it on first use. */
+    public static DbConfig getConfig() {
+        DbConfig current = config;
+        if (current == null) {
+            synchronized (DbConnection.class) {
+                current = config;
+                if (current == null) {
+                    current = DbConfig.load();
+                    config = current;
+                    LOG.info("Database configuration: " + current);
+                }
+            }
+        }
+        return current;
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DbConnection.class) {
+                current = pool;
+                if (current == null) {
+                    start(getConfig(), null);
+                    current = pool;
+                }
+            }
+        }
+        return current;
+    }
+
+    public static ReplicaRouter getRouter() {
+        ReplicaRouter current = router;
+        if (current == null) {
+            synchronized (DbConnection.class) {
+                getPool();
+                current = router;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reloads the configuration from all sources and, if the pools are
+     * running, replaces them with pools built from it. Connections already
+     * borrowed keep working and are closed when returned. If the new
+     * configuration is invalid or cannot connect, a {@link DbException} is
+     * thrown and the current one stays.
+     *
+     * @return the configuration now in effect
+     */
+    public static DbConfig reload() {
+        DbConfig next = DbConfig.load();
+        synchronized (DbConnection.class) {
+            DbConfig previous = config;
+            if (pool != null) {
+                probe(next);
+                ConnectionPool oldPool = pool;
+                ReplicaRouter oldRouter = router;
+                start(next, oldRouter);
+                oldRouter.close();
+                oldPool.close();
+            }
+            config = next;
+            LOG.info("Database configuration reloaded"
+                + (previous != null && !previous.getProfile().equals(next.getProfile())
+                    ? " (profile " + previous.getProfile() + " -> " + next.getProfile() + ")" : "")
+                + ": " + next);
+        }
+        return next;
+    }
+
+    /** Opens one connection with the new settings, so a bad URL or password never replaces working pools. */
+    private static void probe(DbConfig settings) {
+        try (Connection conn = openConnection(settings, settings.getUrl())) {
+            conn.isValid(settings.getValidationTimeoutSeconds());
         } catch (SQLException e) {
-            throw new DbException(e);
+            throw new DbException("Cannot connect with the reloaded database configuration", e);
         }
     }
-}
 
+    /** Builds the pools and router for {@code settings}; callers hold the class lock. */
+    private static void start(DbConfig settings, ReplicaRouter previous) {
+        ConnectionPool primary = newPool(() -> openConnection(settings, settings.getUrl()),
+            settings.getMinPoolSize(), settings);
+        ReplicaRouter next = newRouter(primary, settings);
+        if (previous != null) {
+            next.inheritWrites(previous);
+        }
+        QueryMetrics.setSlowQueryThresholdMillis(settings.getSlowQueryMillis());
+        router = next;
+        pool = primary;
+        addShutdownHook();
+        watchConfigFile(settings);
+    }
+
+    private static synchronized void addShutdownHook() {
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread(DbConnection::shutdown, "recipes-pool-shutdown"));
+            shutdownHookAdded = true;
+        }
+    }
+
+    /**
+     * Has {@link #shutdown()}, and so the JVM's exit, close {@code resource}
+     * before the pools, in reverse order of registration. Registering twice
+     * closes it once.
+     */
+    public static void closeBeforeShutdown(AutoCloseable resource) {
+        if (!beforeShutdown.contains(resource)) {
+            beforeShutdown.add(resource);
+        }
+        addShutdownHook();
+    }
+
+    /** Undoes {@link #closeBeforeShutdown(AutoCloseable)}, e.g. once the resource is closed. */
+    public static void removeBeforeShutdown(AutoCloseable resource) {
+        beforeShutdown.remove(resource);
+    }
+
+    private static ConnectionPool newPool(ConnectionPool.ConnectionFactory factory, int minSize, DbConfig settings) {
+        return new ConnectionPool(factory, minSize, settings.getMaxPoolSize(), settings.getAcquireTimeoutMillis(),
+            settings.getIdleTimeoutMillis(), settings.getLeakDetectionThresholdMillis(),
+            settings.getValidationTimeoutSeconds(), settings.getStatementCacheSize());
+    }
+
+    private static ReplicaRouter newRouter(ConnectionPool primary, DbConfig settings) {
+        List<ConnectionPool> replicaPools = new ArrayList<>();
+        List<String> replicaNames = new ArrayList<>();
+        for (String replicaUrl : settings.getReplicaUrls()) {
+            replicaPools.add(newPool(() -> openReplicaConnection(settings, replicaUrl), 0, settings));
+            // Keep credentials in the query string out of logs
+            int query = replicaUrl.indexOf('?');
+            replicaNames.add(query < 0 ? replicaUrl : replicaUrl.substring(0, query));
+        }
+        return new ReplicaRouter(primary, replicaPools, replicaNames, settings.getReadYourWritesMillis(),
+            settings.getMaxReplicaLagSeconds(), settings.getReplicaCheckMillis(),
+            settings.getValidationTimeoutSeconds(), settings.isReplicaLagCheck());
+    }
+
+    /**
+     * Polls the config file while {@code recipes.db.reloadCheckMillis} is
+     * set, and reloads when it changes. A reload that fails is logged and
+     * the current configuration kept.
+     */
+    private static void watchConfigFile(DbConfig settings) {
+        Path file = settings.getReloadCheckMillis() > 0 ? settings.getConfigFile() : null;
+        long period = settings.getReloadCheckMillis();
+        if (configWatcher != null && file != null && file.equals(watchedFile) && period == watchPeriodMillis) {
+            // Usually called from the watcher itself, which carries on as it is
+            return;
+        }
+        if (configWatcher != null) {
+            configWatcher.shutdown();
+            configWatcher = null;
+        }
+        if (file == null) {
+            return;
+        }
+        watchedFile = file;
+        watchPeriodMillis = period;
+        long[] lastModified = { modifiedTime(file) };
+        configWatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recipes-config-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        configWatcher.scheduleWithFixedDelay(() -> {
+            long modified = modifiedTime(file);
+            if (modified == lastModified[0]) {
+                return;
+            }
+            lastModified[0] = modified;
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Keeping the current database configuration; " + file + " is invalid", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static long modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static Connection openReplicaConnection(DbConfig settings, String url) throws SQLException {
+        Connection conn = openConnection(settings, url);
+        conn.setReadOnly(true);
+        return conn;
+    }
+
+    private static Connection openConnection(DbConfig settings, String url) throws SQLException {
+        return DriverManager.getConnection(url, settings.connectionProperties(url));
+    }
+
+    /**
+     * Opens a new, unpooled connection. Only the pool and callers that need a
+     * dedicated socket (such as benchmarks comparing against the pool) use this.
+     */
+    public static Connection openConnection() throws SQLException {
+        DbConfig settings = getConfig();
+        return openConnection(settings, settings.getUrl());
+    }
+
+    /**
+     * Opens a new, unpooled connection to the primary that may send local
+     * files with {@code LOAD DATA LOCAL INFILE}. A server can ask such a
+     * client for any file it can read, so pooled connections never allow
+     * it; close this one as soon as the load is done.
+     */
+    public static Connection openLocalInfileConnection() throws SQLException {
+        DbConfig settings = getConfig();
+        Properties properties = settings.connectionProperties(settings.getUrl());
+        if (settings.getUrl().startsWith("jdbc:mysql:")) {
+            properties.setProperty("allowLoadLocalInfile", "true");
+        }
+        return DriverManager.getConnection(settings.getUrl(), properties);
+    }
+
+    /**
+     * Opens a new, unpooled connection to the primary on which statements
+     * with a positive fetch size read through server-side cursors, so
+     * several results can be read at once. Connector/J only does this for
+     * server-side prepared statements, which it enables for connections
+     * opened with {@code useCursorFetch}; switching the property on a pooled
+     * connection has no effect when it was opened without them.
+     */
+    public static Connection openCursorFetchConnection() throws SQLException {
+        DbConfig settings = getConfig();
+        Properties properties = settings.connectionProperties(settings.getUrl());
+        if (settings.getUrl().startsWith("jdbc:mysql:")) {
+            properties.setProperty("useServerPrepStmts", "true");
+            properties.setProperty("useCursorFetch", "true");
+        }
+        return DriverManager.getConnection(settings.getUrl(), properties);
+    }
+
+    /**
+     * Closes the resources registered with
+     * {@link #closeBeforeShutdown(AutoCloseable)}, then the config watcher,
+     * router and pools.
+     */
+    public static void shutdown() {
+        // Outside the lock: closing a resource may still borrow connections
+        for (int i = beforeShutdown.size() - 1; i >= 0; i--) {
+            AutoCloseable resource = beforeShutdown.get(i);
+            beforeShutdown.remove(resource);
+            try {
+                resource.close();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Error closing " + resource + " before shutting down the pools", e);
+            }
+        }
+        synchronized (DbConnection.class) {
+            if (configWatcher != null) {
+                configWatcher.shutdownNow();
+                configWatcher = null;
+            }
+            if (router != null) {
+                router.close();
+                router = null;
+            }
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
+    }
+}
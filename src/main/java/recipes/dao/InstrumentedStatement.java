@@ -0,0 +1,237 @@
+package recipes.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps a statement from a pooled connection so every execution is timed and
+ * reported to {@link QueryMetrics}, along with the rows it wrote and, through
+ * a wrapped result set, the rows it read.
+ *
+ * Bound parameters are kept in a reused list so they can be logged if the
+ * statement turns out to be slow. The instrumentation is not free. Each
+ * prepare and each result set allocates a new proxy. A cached statement is
+ * already behind the statement cache's proxy, so its calls go through two
+ * reflective proxies, each with an argument array. The overhead is measured
+ * by {@code QueryMetricsBenchmark}; set {@code -Drecipes.db.metrics=false}
+ * to skip the wrapping.
+ */
+class InstrumentedStatement implements InvocationHandler {
+    private final Statement target;
+    private final Connection owner;
+    private final OperationStats preparedStats;
+    private final List<Object> parameters = new ArrayList<>();
+    private String batchSql;
+    private RowCounter openResults;
+
+    private InstrumentedStatement(Statement target, Connection owner, String sql) {
+        this.target = target;
+        this.owner = owner;
+        this.preparedStats = sql == null ? null : QueryMetrics.statsFor(sql);
+    }
+
+    /**
+     * Wraps the given statement.
+     *
+     * @param sql the statement's SQL if it is prepared, or {@code null} for a
+     *            plain statement whose SQL is passed to each execute call
+     */
+    static Statement wrap(Statement statement, Connection owner, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+            : statement instanceof PreparedStatement ? PreparedStatement.class
+            : Statement.class;
+        return (Statement) Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(),
+            new Class<?>[] { type }, new InstrumentedStatement(statement, owner, sql));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "execute":
+            case "executeQuery":
+            case "executeUpdate":
+            case "executeLargeUpdate":
+            case "executeBatch":
+            case "executeLargeBatch":
+                return execute(proxy, method, args);
+            case "getResultSet":
+                return countRows(proxy, (ResultSet) call(method, args), statsFor(null));
+            case "addBatch":
+                if (args != null && batchSql == null) {
+                    batchSql = (String) args[0];
+                }
+                break;
+            case "clearBatch":
+                batchSql = null;
+                break;
+            case "clearParameters":
+                parameters.clear();
+                break;
+            case "close":
+                flushRowCount();
+                break;
+            case "getConnection":
+                return owner;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Instrumented" + target;
+            default:
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                }
+                break;
+        }
+        return call(method, args);
+    }
+
+    private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+        flushRowCount();
+        String name = method.getName();
+        OperationStats stats = statsFor(args != null && args.length > 0 && args[0] instanceof String
+            ? (String) args[0]
+            : name.endsWith("Batch") ? batchSql : null);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(method, args);
+        } catch (Throwable e) {
+            QueryMetrics.recordExecution(stats, System.nanoTime() - start, 0, true, parameters);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long written = 0;
+        if (result instanceof Integer || result instanceof Long) {
+            written = Math.max(0, ((Number) result).longValue());
+        } else if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                written += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                written += Math.max(0, count);
+            }
+        } else if (Boolean.FALSE.equals(result)) {
+            written = Math.max(0, target.getUpdateCount());
+        }
+        if (name.endsWith("Batch")) {
+            batchSql = null;
+        }
+        QueryMetrics.recordExecution(stats, elapsed, written, false, parameters);
+
+        if (result instanceof ResultSet) {
+            return countRows(proxy, (ResultSet) result, stats);
+        }
+        return result;
+    }
+
+    private OperationStats statsFor(String sql) {
+        if (preparedStats != null) {
+            return preparedStats;
+        }
+        return QueryMetrics.statsFor(sql == null ? "(unknown)" : sql);
+    }
+
+    private void bind(int index, Object value) {
+        while (parameters.size() < index) {
+            parameters.add(null);
+        }
+        parameters.set(index - 1, value);
+    }
+
+    private ResultSet countRows(Object statementProxy, ResultSet rs, OperationStats stats) {
+        if (rs == null) {
+            return null;
+        }
+        flushRowCount();
+        openResults = new RowCounter(rs, statementProxy, stats);
+        return (ResultSet) Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class }, openResults);
+    }
+
+    private void flushRowCount() {
+        if (openResults != null) {
+            openResults.report();
+            openResults = null;
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Counts the rows a caller reads and reports them once, on exhaustion or close. */
+    private static class RowCounter implements InvocationHandler {
+        private final ResultSet target;
+        private final Object statement;
+        private final OperationStats stats;
+        private long rows;
+        private boolean reported;
+
+        private RowCounter(ResultSet target, Object statement, OperationStats stats) {
+            this.target = target;
+            this.statement = statement;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    boolean more = (Boolean) call(method, args);
+                    if (more) {
+                        rows++;
+                    } else {
+                        report();
+                    }
+                    return more;
+                case "close":
+                    report();
+                    break;
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented" + target;
+                default:
+                    break;
+            }
+            return call(method, args);
+        }
+
+        private void report() {
+            if (!reported) {
+                reported = true;
+                QueryMetrics.recordRowsRead(stats, rows);
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package recipes.dao;
+
+import java.util.List;
+
+/**
+ * Receives database metrics as they happen, for forwarding to an external
+ * metrics system.
+ *
+ * Implementations are found with {@link java.util.ServiceLoader} (list the
+ * class in {@code META-INF/services/recipes.dao.MetricsListener}) or added
+ * with {@link QueryMetrics#addListener}. They are called on the thread that
+ * ran the query, so they must be fast and must not throw.
+ */
+public interface MetricsListener {
+
+    /**
+     * A statement finished executing.
+     *
+     * @param rowsWritten rows changed, or 0 for queries
+     */
+    default void onQuery(String sql, long elapsedNanos, long rowsWritten, boolean failed) {
+    }
+
+    /** A result set was closed or exhausted after returning {@code rows} rows. */
+    default void onRowsRead(String sql, long rows) {
+    }
+
+    /** A caller waited {@code waitNanos} to borrow a pooled connection. */
+    default void onPoolWait(long waitNanos, boolean timedOut) {
+    }
+
+    /** A statement took longer than the slow-query threshold. */
+    default void onSlowQuery(String sql, List<Object> parameters, long elapsedNanos) {
+    }
+}
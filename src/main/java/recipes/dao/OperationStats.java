@@ -0,0 +1,62 @@
+package recipes.dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Latency, row and error counts for one SQL statement text. */
+public class OperationStats {
+    private final String sql;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    OperationStats(String sql) {
+        this.sql = sql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    void recordExecution(long nanos, long written, boolean failed) {
+        latency.record(nanos);
+        if (written > 0) {
+            rowsWritten.add(written);
+        }
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    void recordRowsRead(long rows) {
+        rowsRead.add(rows);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms read=%d written=%d errors=%d: %s",
+            latency.getCount(), millis(latency.getPercentileNanos(50)), millis(latency.getPercentileNanos(99)),
+            millis(latency.getPercentileNanos(99.9)), millis(latency.getMaxNanos()), getRowsRead(),
+            getRowsWritten(), getErrorCount(), sql);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,273 @@
+package recipes.dao;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latency, row and error metrics for every statement run through pooled
+ * connections, plus connection pool wait times.
+ *
+ * Statements are tracked per SQL text, up to a cap; anything beyond it is
+ * folded into a single {@code (other)} entry. Statements slower than the
+ * slow-query threshold ({@code recipes.db.slowQueryMillis} in the
+ * {@link DbConfig}, 500 ms by default) are logged at WARNING with their bound parameters. The metrics
+ * are published over JMX as {@code recipes:type=QueryMetrics} and pushed to
+ * any registered {@link MetricsListener}. Set {@code -Drecipes.db.metrics=false}
+ * to turn instrumentation off entirely.
+ */
+public final class QueryMetrics {
+    private static final Logger LOG = Logger.getLogger(QueryMetrics.class.getName());
+    private static final int MAX_OPERATIONS = 1_000;
+    private static final String OVERFLOW_SQL = "(other)";
+    private static final String MBEAN_NAME = "recipes:type=QueryMetrics";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("recipes.db.metrics"));
+    private static final ConcurrentHashMap<String, OperationStats> OPERATIONS = new ConcurrentHashMap<>();
+    private static final List<MetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final LongAdder POOL_TIMEOUTS = new LongAdder();
+    private static final LongAdder SLOW_QUERIES = new LongAdder();
+
+    private static volatile LatencyHistogram latency = new LatencyHistogram();
+    private static volatile LatencyHistogram poolWait = new LatencyHistogram();
+    private static volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+        Long.getLong("recipes.db.slowQueryMillis", 500));
+
+    static {
+        if (ENABLED) {
+            loadListeners();
+            registerMBean();
+        }
+    }
+
+    private QueryMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static void addListener(MetricsListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(MetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public static long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    public static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /** Latency of every statement, across all SQL texts. */
+    public static LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /** Time spent waiting in {@link ConnectionPool#borrow()}. */
+    public static LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    public static long getPoolTimeoutCount() {
+        return POOL_TIMEOUTS.sum();
+    }
+
+    public static long getSlowQueryCount() {
+        return SLOW_QUERIES.sum();
+    }
+
+    /** Returns the tracked statements, most time-consuming first. */
+    public static List<OperationStats> getOperations() {
+        List<OperationStats> operations = new ArrayList<>(OPERATIONS.values());
+        operations.sort(Comparator.comparingDouble(QueryMetrics::totalNanos).reversed());
+        return operations;
+    }
+
+    /**
+     * Discards everything recorded so far. Statements that are open at the
+     * time keep reporting to their old entries until they are prepared again.
+     */
+    public static void reset() {
+        OPERATIONS.clear();
+        POOL_TIMEOUTS.reset();
+        SLOW_QUERIES.reset();
+        latency = new LatencyHistogram();
+        poolWait = new LatencyHistogram();
+    }
+
+    static OperationStats statsFor(String sql) {
+        OperationStats stats = OPERATIONS.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        if (OPERATIONS.size() >= MAX_OPERATIONS) {
+            return OPERATIONS.computeIfAbsent(OVERFLOW_SQL, OperationStats::new);
+        }
+        return OPERATIONS.computeIfAbsent(sql, OperationStats::new);
+    }
+
+    static void recordExecution(OperationStats stats, long nanos, long rowsWritten, boolean failed,
+            List<Object> parameters) {
+        stats.recordExecution(nanos, rowsWritten, failed);
+        latency.record(nanos);
+        for (MetricsListener listener : LISTENERS) {
+            listener.onQuery(stats.getSql(), nanos, rowsWritten, failed);
+        }
+        if (nanos >= slowQueryThresholdNanos) {
+            SLOW_QUERIES.increment();
+            List<Object> bound = new ArrayList<>(parameters);
+            LOG.warning(String.format("Slow query (%.1f ms): %s %s", nanos / 1_000_000.0, stats.getSql(), bound));
+            for (MetricsListener listener : LISTENERS) {
+                listener.onSlowQuery(stats.getSql(), bound, nanos);
+            }
+        }
+    }
+
+    static void recordRowsRead(OperationStats stats, long rows) {
+        stats.recordRowsRead(rows);
+        for (MetricsListener listener : LISTENERS) {
+            listener.onRowsRead(stats.getSql(), rows);
+        }
+    }
+
+    static void recordPoolWait(long nanos, boolean timedOut) {
+        poolWait.record(nanos);
+        if (timedOut) {
+            POOL_TIMEOUTS.increment();
+        }
+        for (MetricsListener listener : LISTENERS) {
+            listener.onPoolWait(nanos, timedOut);
+        }
+    }
+
+    private static double totalNanos(OperationStats stats) {
+        return stats.getLatency().getMeanNanos() * stats.getLatency().getCount();
+    }
+
+    private static void loadListeners() {
+        try {
+            for (MetricsListener listener : ServiceLoader.load(MetricsListener.class)) {
+                LISTENERS.add(listener);
+            }
+        } catch (ServiceConfigurationError e) {
+            LOG.log(Level.WARNING, "Could not load metrics listeners", e);
+        }
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(MBEAN_NAME));
+        } catch (JMException | SecurityException e) {
+            LOG.log(Level.FINE, "Could not register " + MBEAN_NAME, e);
+        }
+    }
+
+    private static final class MXBean implements QueryMetricsMXBean {
+
+        @Override
+        public long getQueryCount() {
+            return latency.getCount();
+        }
+
+        @Override
+        public long getErrorCount() {
+            return OPERATIONS.values().stream().mapToLong(OperationStats::getErrorCount).sum();
+        }
+
+        @Override
+        public long getRowsRead() {
+            return OPERATIONS.values().stream().mapToLong(OperationStats::getRowsRead).sum();
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return OPERATIONS.values().stream().mapToLong(OperationStats::getRowsWritten).sum();
+        }
+
+        @Override
+        public long getSlowQueryCount() {
+            return QueryMetrics.getSlowQueryCount();
+        }
+
+        @Override
+        public long getLatencyP50Micros() {
+            return micros(latency.getPercentileNanos(50));
+        }
+
+        @Override
+        public long getLatencyP99Micros() {
+            return micros(latency.getPercentileNanos(99));
+        }
+
+        @Override
+        public long getLatencyP999Micros() {
+            return micros(latency.getPercentileNanos(99.9));
+        }
+
+        @Override
+        public long getLatencyMaxMicros() {
+            return micros(latency.getMaxNanos());
+        }
+
+        @Override
+        public long getPoolWaitP50Micros() {
+            return micros(poolWait.getPercentileNanos(50));
+        }
+
+        @Override
+        public long getPoolWaitP99Micros() {
+            return micros(poolWait.getPercentileNanos(99));
+        }
+
+        @Override
+        public long getPoolWaitMaxMicros() {
+            return micros(poolWait.getMaxNanos());
+        }
+
+        @Override
+        public long getPoolTimeoutCount() {
+            return QueryMetrics.getPoolTimeoutCount();
+        }
+
+        @Override
+        public long getSlowQueryThresholdMillis() {
+            return QueryMetrics.getSlowQueryThresholdMillis();
+        }
+
+        @Override
+        public void setSlowQueryThresholdMillis(long millis) {
+            QueryMetrics.setSlowQueryThresholdMillis(millis);
+        }
+
+        @Override
+        public String[] getOperations() {
+            return QueryMetrics.getOperations().stream().map(OperationStats::toString).toArray(String[]::new);
+        }
+
+        @Override
+        public void reset() {
+            QueryMetrics.reset();
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
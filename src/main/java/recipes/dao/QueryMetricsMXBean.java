@@ -0,0 +1,43 @@
+package recipes.dao;
+
+/**
+ * JMX view of {@link QueryMetrics}, registered as
+ * {@code recipes:type=QueryMetrics}. Latencies are in microseconds.
+ */
+public interface QueryMetricsMXBean {
+
+    long getQueryCount();
+
+    long getErrorCount();
+
+    long getRowsRead();
+
+    long getRowsWritten();
+
+    long getSlowQueryCount();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyP999Micros();
+
+    long getLatencyMaxMicros();
+
+    long getPoolWaitP50Micros();
+
+    long getPoolWaitP99Micros();
+
+    long getPoolWaitMaxMicros();
+
+    long getPoolTimeoutCount();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    /** One line per statement: counts, percentiles and the SQL text. */
+    String[] getOperations();
+
+    void reset();
+}
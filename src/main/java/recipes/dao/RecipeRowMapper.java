@@ -0,0 +1,78 @@
+package recipes.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import recipes.entity.Recipe;
+import recipes.entity.RecipeBatch;
+
+/**
+ * Maps rows of the {@code recipe} table to {@link Recipe} objects.
+ *
+ * Column positions are resolved once when the mapper is created, so mapping a
+ * row is a handful of indexed getters with no name lookups. Queries should
+ * select {@link #COLUMNS} rather than {@code *}. SQL NULL stays {@code null}
+ * instead of turning into 0. {@link #mapInto} copies a row straight into a
+ * {@link RecipeBatch} without creating a {@code Recipe} or boxing anything.
+ */
+public class RecipeRowMapper {
+    public static final String COLUMNS = "recipe_id, recipe_name, num_serving, prep_time, cook_time, notes";
+
+    private final int idIndex;
+    private final int nameIndex;
+    private final int servingsIndex;
+    private final int prepTimeIndex;
+    private final int cookTimeIndex;
+    private final int notesIndex;
+
+    public RecipeRowMapper(ResultSet rs) throws SQLException {
+        this.idIndex = rs.findColumn("recipe_id");
+        this.nameIndex = rs.findColumn("recipe_name");
+        this.servingsIndex = rs.findColumn("num_serving");
+        this.prepTimeIndex = rs.findColumn("prep_time");
+        this.cookTimeIndex = rs.findColumn("cook_time");
+        this.notesIndex = rs.findColumn("notes");
+    }
+
+    public Recipe map(ResultSet rs) throws SQLException {
+        Recipe recipe = new Recipe();
+        recipe.setId(rs.getInt(idIndex));
+        recipe.setRecipeName(rs.getString(nameIndex));
+
+        int servings = rs.getInt(servingsIndex);
+        recipe.setNumServings(rs.wasNull() ? null : servings);
+
+        double prepTime = rs.getDouble(prepTimeIndex);
+        recipe.setPrepTime(rs.wasNull() ? null : prepTime);
+
+        double cookTime = rs.getDouble(cookTimeIndex);
+        recipe.setCookTime(rs.wasNull() ? null : cookTime);
+
+        recipe.setNotes(rs.getString(notesIndex));
+        return recipe;
+    }
+
+    /** Appends the current row to {@code batch} and returns its index there. */
+    public int mapInto(ResultSet rs, RecipeBatch batch) throws SQLException {
+        int row = batch.addRow(rs.getInt(idIndex));
+        batch.setRecipeName(row, rs.getString(nameIndex));
+
+        int servings = rs.getInt(servingsIndex);
+        if (!rs.wasNull()) {
+            batch.setNumServings(row, servings);
+        }
+
+        double prepTime = rs.getDouble(prepTimeIndex);
+        if (!rs.wasNull()) {
+            batch.setPrepTime(row, prepTime);
+        }
+
+        double cookTime = rs.getDouble(cookTimeIndex);
+        if (!rs.wasNull()) {
+            batch.setCookTime(row, cookTime);
+        }
+
+        batch.setNotes(row, rs.getString(notesIndex));
+        return row;
+    }
+}
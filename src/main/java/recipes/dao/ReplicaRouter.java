@@ -0,0 +1,306 @@
+package recipes.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import recipes.exception.DbException;
+
+/**
+ * Sends reads to read replicas and everything else to the primary.
+ *
+ * Each replica has its own {@link ConnectionPool}. Reads are spread over the
+ * healthy replicas in turn. A background check runs every few seconds. It
+ * marks a replica down if it cannot be reached or if its replication lag
+ * ({@code Seconds_Behind_Source}) is over the limit, and brings it back once
+ * it passes again. A replica whose lag cannot be read, for example because
+ * the account lacks the {@code REPLICATION CLIENT} privilege, is treated as
+ * arbitrarily far behind, unless the lag check is switched off for
+ * replicas that cannot report it. A replica that fails while a connection is being borrowed
+ * is marked down at once and the next one is tried. If none is healthy,
+ * reads go to the primary.
+ *
+ * For read-your-writes, reads also go to the primary while any connection
+ * borrowed for writing is open in this JVM, and for a sticky window after
+ * the last one is returned. A replica in rotation was at most the lag limit
+ * behind when it was last checked, one check period ago at most, so the
+ * window must be at least the lag limit plus the check period (see
+ * {@link #minStickyMillis}); the constructor rejects anything shorter.
+ * Within that bound a replica never serves a read issued after a local
+ * write it has not applied yet. Writes made by other processes get no such
+ * guarantee.
+ */
+public class ReplicaRouter implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ReplicaRouter.class.getName());
+    private static final String[] LAG_QUERIES = { "SHOW REPLICA STATUS", "SHOW SLAVE STATUS" };
+    private static final String[] LAG_COLUMNS = { "Seconds_Behind_Source", "Seconds_Behind_Master" };
+
+    private final ConnectionPool primary;
+    private final List<Replica> replicas;
+    private final long stickyNanos;
+    private final long maxLagSeconds;
+    private final int validationTimeoutSeconds;
+    private final boolean lagCheckRequired;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger openWrites = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+    private volatile long lastWriteNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+    // The router this one replaced on a configuration reload, while its writes may still be open
+    private volatile ReplicaRouter previous;
+
+    /**
+     * @param replicaPools      one pool per replica, named by its description
+     * @param stickyMillis      how long reads stay on the primary after a local write
+     * @param maxLagSeconds     replication lag above which a replica is taken out of rotation
+     * @param checkPeriodMillis how often replicas are checked
+     * @param lagCheckRequired  take replicas whose lag cannot be read out of rotation
+     * @throws IllegalArgumentException if there are replicas and
+     *         {@code stickyMillis} is shorter than {@link #minStickyMillis}
+     */
+    public ReplicaRouter(ConnectionPool primary, List<ConnectionPool> replicaPools, List<String> replicaNames,
+            long stickyMillis, long maxLagSeconds, long checkPeriodMillis, int validationTimeoutSeconds,
+            boolean lagCheckRequired) {
+        if (!replicaPools.isEmpty() && stickyMillis < minStickyMillis(maxLagSeconds, checkPeriodMillis)) {
+            throw new IllegalArgumentException("Read-your-writes window of " + stickyMillis
+                + " ms is shorter than the " + minStickyMillis(maxLagSeconds, checkPeriodMillis)
+                + " ms a healthy replica can be behind");
+        }
+        this.primary = primary;
+        this.stickyNanos = TimeUnit.MILLISECONDS.toNanos(stickyMillis);
+        this.maxLagSeconds = maxLagSeconds;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.lagCheckRequired = lagCheckRequired;
+
+        List<Replica> list = new ArrayList<>(replicaPools.size());
+        for (int i = 0; i < replicaPools.size(); i++) {
+            list.add(new Replica(replicaNames.get(i), replicaPools.get(i)));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+
+        if (replicas.isEmpty()) {
+            this.healthChecker = null;
+        } else {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "recipes-replica-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0, checkPeriodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The shortest read-your-writes window that keeps reads off replicas
+     * that may not have a local write yet: a replica can pass a check at
+     * the lag limit and then fall a whole check period further behind
+     * before the next one takes it out of rotation.
+     */
+    public static long minStickyMillis(long maxLagSeconds, long checkPeriodMillis) {
+        return TimeUnit.SECONDS.toMillis(maxLagSeconds) + checkPeriodMillis;
+    }
+
+    /**
+     * Borrows a primary connection for writing. Until it is returned, and
+     * for the sticky window afterwards, reads are served by the primary too.
+     */
+    public Connection getWriteConnection() {
+        openWrites.incrementAndGet();
+        try {
+            return primary.borrow(this::writeFinished);
+        } catch (RuntimeException e) {
+            writeFinished();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrows a connection for reading: from the next healthy replica, or
+     * from the primary if a local write is recent or no replica is healthy.
+     */
+    public Connection getReadConnection() {
+        if (replicas.isEmpty() || isSticky()) {
+            return primary.borrow();
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.pool.borrow();
+            } catch (DbException e) {
+                // A replica that cannot open connections is down; one that is merely busy is not
+                if (e.getCause() instanceof SQLException) {
+                    markDown(replica, e.getCause().getMessage());
+                }
+            }
+        }
+        return primary.borrow();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public int getHealthyReplicaCount() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    /** One line per replica: name, health, last observed lag and pool usage. */
+    public List<String> getReplicaStatus() {
+        List<String> status = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            status.add(replica.toString());
+        }
+        return status;
+    }
+
+    /**
+     * Keeps reads on the primary while writes borrowed through
+     * {@code previous} are still open or recent, so replacing the router on
+     * a configuration reload does not break read-your-writes.
+     */
+    void inheritWrites(ReplicaRouter previous) {
+        this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    private boolean isSticky() {
+        if (openWrites.get() > 0 || System.nanoTime() - lastWriteNanos < stickyNanos) {
+            return true;
+        }
+        ReplicaRouter replaced = previous;
+        if (replaced != null) {
+            if (replaced.isSticky()) {
+                return true;
+            }
+            previous = null;
+        }
+        return false;
+    }
+
+    private void writeFinished() {
+        lastWriteNanos = System.nanoTime();
+        openWrites.decrementAndGet();
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try {
+                check(replica);
+            } catch (RuntimeException e) {
+                markDown(replica, e.toString());
+            }
+        }
+    }
+
+    private void check(Replica replica) {
+        try (Connection conn = replica.pool.borrow()) {
+            if (!conn.isValid(validationTimeoutSeconds)) {
+                markDown(replica, "connection is not valid");
+                return;
+            }
+            long lag = replicationLag(replica, conn);
+            replica.lagSeconds = lag;
+            if (lag == Long.MAX_VALUE) {
+                markDown(replica, "replication is not running or its lag cannot be read");
+            } else if (lag > maxLagSeconds) {
+                markDown(replica, "replication lag " + lag + " s is over " + maxLagSeconds + " s");
+            } else {
+                markUp(replica);
+            }
+        } catch (SQLException e) {
+            markDown(replica, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the replica's lag in seconds: 0 if the server reports no
+     * replication, or {@code Long.MAX_VALUE} if replication is configured
+     * but stopped or the status cannot be read at all. The last counts as no
+     * lag only when the lag check is not required.
+     */
+    private long replicationLag(Replica replica, Connection conn) {
+        SQLException failure = null;
+        for (int i = 0; i < LAG_QUERIES.length; i++) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(LAG_QUERIES[i])) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long lag = rs.getLong(LAG_COLUMNS[i]);
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            } catch (SQLException e) {
+                // SHOW REPLICA STATUS needs MySQL 8.0.22; older servers only know the SLAVE form
+                failure = e;
+            }
+        }
+        if (!lagCheckRequired) {
+            return 0;
+        }
+        if (replica.lagSeconds != Long.MAX_VALUE) {
+            LOG.log(Level.WARNING, "Cannot read the replication lag of " + replica.name, failure);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            LOG.warning("Replica " + replica.name + " taken out of rotation: " + reason);
+        }
+    }
+
+    private void markUp(Replica replica) {
+        if (!replica.healthy) {
+            replica.healthy = true;
+            LOG.info("Replica " + replica.name + " back in rotation");
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final ConnectionPool pool;
+        // Down until the first health check passes
+        private volatile boolean healthy;
+        private volatile long lagSeconds = -1;
+
+        private Replica(String name, ConnectionPool pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        @Override
+        public String toString() {
+            return name + (healthy ? " up" : " down") + ", lag=" + (lagSeconds < 0 ? "?" : lagSeconds + " s")
+                + ", active=" + pool.getActiveConnections() + "/" + pool.getTotalConnections();
+        }
+    }
+}
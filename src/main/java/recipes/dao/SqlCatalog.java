@@ -0,0 +1,37 @@
+package recipes.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distinct SQL texts prepared through pooled connections since startup.
+ *
+ * Tools such as {@code IndexAdvisor} use it to examine exactly the statements
+ * the application runs. The catalog is capped, so SQL built with inlined
+ * values cannot grow it without bound.
+ */
+public final class SqlCatalog {
+    private static final int MAX_STATEMENTS = 1_000;
+    private static final Set<String> STATEMENTS = ConcurrentHashMap.newKeySet();
+
+    private SqlCatalog() {
+    }
+
+    static void record(String sql) {
+        // The advisor's own EXPLAINs run through the pool too
+        if (STATEMENTS.size() < MAX_STATEMENTS && !sql.regionMatches(true, 0, "EXPLAIN ", 0, 8)) {
+            STATEMENTS.add(sql);
+        }
+    }
+
+    /** Returns the recorded statements, in no particular order. */
+    public static List<String> getStatements() {
+        return new ArrayList<>(STATEMENTS);
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+}
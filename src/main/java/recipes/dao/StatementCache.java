@@ -0,0 +1,206 @@
+package recipes.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL
+ * text. The cache lives as long as the pooled connection, so a statement
+ * prepared by one borrower is reused by the next one that issues the same SQL.
+ *
+ * Statements handed out by the cache ignore {@code close()}: their parameters
+ * are cleared and they go back into the cache. A statement that is already
+ * checked out is never shared; a second request for the same SQL gets a
+ * plain, uncached statement.
+ */
+public class StatementCache {
+    private static final Logger LOG = Logger.getLogger(StatementCache.class.getName());
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private final Connection connection;
+    private final Map<String, CachedStatement> statements;
+
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                EVICTIONS.increment();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, reusing a cached one
+     * when it is available.
+     *
+     * @param owner the pooled connection the caller sees, returned from
+     *            {@code getConnection()} on the statement
+     * @param autoGeneratedKeys a {@code Statement} generated-keys constant, or
+     *            {@code null} for the plain {@code prepareStatement(sql)} form
+     */
+    synchronized PreparedStatement prepare(Connection owner, String sql, Integer autoGeneratedKeys)
+            throws SQLException {
+        String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+            HITS.increment();
+        } else if (cached != null && cached.inUse) {
+            MISSES.increment();
+            return prepareUncached(sql, autoGeneratedKeys);
+        } else {
+            MISSES.increment();
+            cached = new CachedStatement(prepareUncached(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+        }
+
+        cached.inUse = true;
+        return cached.newHandle(owner);
+    }
+
+    synchronized void closeAll() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            cached.evict();
+        }
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    private PreparedStatement prepareUncached(String sql, Integer autoGeneratedKeys) throws SQLException {
+        return autoGeneratedKeys == null
+            ? connection.prepareStatement(sql)
+            : connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    private synchronized void checkIn(CachedStatement cached) {
+        cached.inUse = false;
+        if (cached.evicted) {
+            closeQuietly(cached.statement);
+            return;
+        }
+        try {
+            ResultSet rs = cached.statement.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            cached.statement.clearParameters();
+            cached.statement.clearBatch();
+            cached.statement.clearWarnings();
+        } catch (SQLException e) {
+            statements.values().remove(cached);
+            closeQuietly(cached.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "Error closing cached statement", e);
+        }
+    }
+
+    private class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly(statement);
+            }
+        }
+
+        private PreparedStatement newHandle(Connection owner) {
+            return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new Handle(this, owner));
+        }
+    }
+
+    /** The statement handed to callers; closing it checks it back in. */
+    private class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean closed;
+
+        private Handle(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkIn(cached);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package recipes.entity;
+
+import java.math.BigDecimal;
+
+public class Ingredient {
+    private Integer ingredientId;
+    private Integer recipeId;
+    private Unit unit;
+    private String ingredientName;
+    private String instruction;
+    private Integer ingredientOrder;
+    private BigDecimal amount;
+    
+    // Default constructor
+    public Ingredient() {
+    }
+    
+    // Constructor with parameters
+    public Ingredient(String ingredientName, String instruction, BigDecimal amount, Unit unit) {
+        this.ingredientName = ingredientName;
+        this.instruction = instruction;
+        this.amount = amount;
+        this.unit = unit;
+    }
+    
+    // Getters and setters
+    public Integer getIngredientId() {
+        return ingredientId;
+    }
+    
+    public void setIngredientId(Integer ingredientId) {
+        this.ingredientId = ingredientId;
+    }
+    
+    public Integer getRecipeId() {
+        return recipeId;
+    }
+    
+    public void setRecipeId(Integer recipeId) {
+        this.recipeId = recipeId;
+    }
+    
+    public Unit getUnit() {
+        return unit;
+    }
+    
+    public void setUnit(Unit unit) {
+        this.unit = unit;
+    }
+    
+    public String getIngredientName() {
+        return ingredientName;
+    }
+    
+    public void setIngredientName(String ingredientName) {
+        this.ingredientName = ingredientName;
+    }
+    
+    public String getInstruction() {
+        return instruction;
+    }
+    
+    public void setInstruction(String instruction) {
+        this.instruction = instruction;
+    }
+    
+    public Integer getIngredientOrder() {
+        return ingredientOrder;
+    }
+    
+    public void setIngredientOrder(Integer ingredientOrder) {
+        this.ingredientOrder = ingredientOrder;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    @Override
+    public String toString() {
+        return "Ingredient{" +
+                "ingredientId=" + ingredientId +
+                ", recipeId=" + recipeId +
+                ", unit=" + unit +
+                ", ingredientName='" + ingredientName + '\'' +
+                ", instruction='" + instruction + '\'' +
+                ", ingredientOrder=" + ingredientOrder +
+                ", amount=" + amount +
+                '}';
+    }
+}
@@ -1,5 +1,8 @@
 package recipes.entity;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Recipe {
     private Integer id;
     private String recipeName;
@@ -7,6 +10,9 @@ public class Recipe {
     private Double prepTime;
     private Double cookTime;
     private String notes;
+    private List<Ingredient> ingredients = new ArrayList<>();
+    private List<Step> steps = new ArrayList<>();
+    private List<Category> categories = new ArrayList<>();
     
     // Default constructor
     public Recipe() {
@@ -21,6 +27,19 @@ public class Recipe {
         this.notes = notes;
     }
     
+    // Copy constructor
+    public Recipe(Recipe other) {
+        this.id = other.id;
+        this.recipeName = other.recipeName;
+        this.numServings = other.numServings;
+        this.prepTime = other.prepTime;
+        this.cookTime = other.cookTime;
+        this.notes = other.notes;
+        this.ingredients = new ArrayList<>(other.ingredients);
+        this.steps = new ArrayList<>(other.steps);
+        this.categories = new ArrayList<>(other.categories);
+    }
+    
     // Getters and setters
     public Integer getId() {
         return id;
@@ -70,6 +89,30 @@ public class Recipe {
         this.notes = notes;
     }
     
+    public List<Ingredient> getIngredients() {
+        return ingredients;
+    }
+    
+    public void setIngredients(List<Ingredient> ingredients) {
+        this.ingredients = ingredients;
+    }
+    
+    public List<Step> getSteps() {
+        return steps;
+    }
+    
+    public void setSteps(List<Step> steps) {
+        this.steps = steps;
+    }
+    
+    public List<Category> getCategories() {
+        return categories;
+    }
+    
+    public void setCategories(List<Category> categories) {
+        this.categories = categories;
+    }
+    
     @Override
     public String toString() {
         return "Recipe{" +
@@ -0,0 +1,325 @@
+package recipes.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A compact, column-oriented block of recipe rows for bulk in-memory work.
+ *
+ * Where a {@link Recipe} costs a boxed object per numeric field, a batch
+ * keeps each column in a primitive array ({@code int[]} IDs and servings,
+ * {@code double[]} times) with a bitmap marking SQL NULLs, and stores every
+ * name and note as UTF-8 in one shared byte arena. A million rows is a few
+ * dozen arrays rather than several million objects.
+ *
+ * Rows are read through a {@link Row} flyweight: one cursor object is moved
+ * from row to row, so iterating allocates nothing until a string is asked
+ * for. Child lists (ingredients, steps, categories) are not held; use
+ * {@link Row#toRecipe()} and the aggregate loader when they are needed.
+ *
+ * A batch is not thread-safe. Streaming callers reuse one batch through
+ * {@link #clear()}, so a batch handed to a consumer must not be kept after
+ * the consumer returns.
+ */
+public class RecipeBatch {
+    private static final int DEFAULT_CAPACITY = 1_024;
+    private static final int NULL_LENGTH = -1;
+
+    private int size;
+    private int[] ids;
+    private int[] servings;
+    private double[] prepTimes;
+    private double[] cookTimes;
+    private long[] servingsNulls;
+    private long[] prepTimeNulls;
+    private long[] cookTimeNulls;
+
+    // Each string is arena[offset, offset + length); length -1 means null
+    private int[] nameOffsets;
+    private int[] nameLengths;
+    private int[] notesOffsets;
+    private int[] notesLengths;
+    private byte[] arena;
+    private int arenaSize;
+
+    public RecipeBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RecipeBatch(int capacity) {
+        int rows = Math.max(1, capacity);
+        ids = new int[rows];
+        servings = new int[rows];
+        prepTimes = new double[rows];
+        cookTimes = new double[rows];
+        servingsNulls = new long[words(rows)];
+        prepTimeNulls = new long[words(rows)];
+        cookTimeNulls = new long[words(rows)];
+        nameOffsets = new int[rows];
+        nameLengths = new int[rows];
+        notesOffsets = new int[rows];
+        notesLengths = new int[rows];
+        arena = new byte[rows * 32];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Empties the batch but keeps its arrays, so it can be filled again without allocating. */
+    public void clear() {
+        Arrays.fill(servingsNulls, 0, words(size), 0L);
+        Arrays.fill(prepTimeNulls, 0, words(size), 0L);
+        Arrays.fill(cookTimeNulls, 0, words(size), 0L);
+        size = 0;
+        arenaSize = 0;
+    }
+
+    /** Appends a row and returns its index. {@code null} values are recorded as SQL NULL. */
+    public int add(int id, String recipeName, Integer numServings, Double prepTime, Double cookTime, String notes) {
+        int row = addRow(id);
+        setRecipeName(row, recipeName);
+        if (numServings != null) {
+            setNumServings(row, numServings);
+        }
+        if (prepTime != null) {
+            setPrepTime(row, prepTime);
+        }
+        if (cookTime != null) {
+            setCookTime(row, cookTime);
+        }
+        setNotes(row, notes);
+        return row;
+    }
+
+    public int add(Recipe recipe) {
+        return add(recipe.getId() == null ? 0 : recipe.getId(), recipe.getRecipeName(), recipe.getNumServings(),
+            recipe.getPrepTime(), recipe.getCookTime(), recipe.getNotes());
+    }
+
+    /**
+     * Appends a row with every other column NULL and returns its index. The
+     * setters below fill it in without boxing, which is how result sets are
+     * copied in.
+     */
+    public int addRow(int id) {
+        int row = size;
+        ensureCapacity(row + 1);
+        ids[row] = id;
+        setNull(servingsNulls, row);
+        setNull(prepTimeNulls, row);
+        setNull(cookTimeNulls, row);
+        nameLengths[row] = NULL_LENGTH;
+        notesLengths[row] = NULL_LENGTH;
+        size = row + 1;
+        return row;
+    }
+
+    public void setRecipeName(int row, String recipeName) {
+        nameOffsets[row] = arenaSize;
+        nameLengths[row] = append(recipeName);
+    }
+
+    public void setNumServings(int row, int numServings) {
+        servings[row] = numServings;
+        clearNull(servingsNulls, row);
+    }
+
+    public void setPrepTime(int row, double prepTime) {
+        prepTimes[row] = prepTime;
+        clearNull(prepTimeNulls, row);
+    }
+
+    public void setCookTime(int row, double cookTime) {
+        cookTimes[row] = cookTime;
+        clearNull(cookTimeNulls, row);
+    }
+
+    public void setNotes(int row, String notes) {
+        notesOffsets[row] = arenaSize;
+        notesLengths[row] = append(notes);
+    }
+
+    /**
+     * Returns a new cursor positioned on the given row. Call
+     * {@link Row#moveTo(int)} to reuse it for other rows.
+     */
+    public Row row(int index) {
+        Row row = new Row();
+        row.moveTo(index);
+        return row;
+    }
+
+    /** Visits every row with a single reused cursor. */
+    public void forEach(Consumer<? super Row> action) {
+        Row row = new Row();
+        for (int i = 0; i < size; i++) {
+            row.index = i;
+            action.accept(row);
+        }
+    }
+
+    /** Approximate heap footprint of the batch's arrays, in bytes. */
+    public long estimatedBytes() {
+        long rows = ids.length;
+        return rows * (4 + 4 + 8 + 8 + 4 * 4) + 3L * servingsNulls.length * 8 + arena.length;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(rows, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        servings = Arrays.copyOf(servings, capacity);
+        prepTimes = Arrays.copyOf(prepTimes, capacity);
+        cookTimes = Arrays.copyOf(cookTimes, capacity);
+        servingsNulls = Arrays.copyOf(servingsNulls, words(capacity));
+        prepTimeNulls = Arrays.copyOf(prepTimeNulls, words(capacity));
+        cookTimeNulls = Arrays.copyOf(cookTimeNulls, words(capacity));
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        notesOffsets = Arrays.copyOf(notesOffsets, capacity);
+        notesLengths = Arrays.copyOf(notesLengths, capacity);
+    }
+
+    /** Writes {@code value} to the arena as UTF-8 and returns its length in bytes. */
+    private int append(String value) {
+        if (value == null) {
+            return NULL_LENGTH;
+        }
+        int length = value.length();
+        // At most three bytes per UTF-16 unit; surrogate pairs take four bytes for two units
+        ensureArena(arenaSize + length * 3);
+        int start = arenaSize;
+        int pos = start;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                arena[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                arena[pos++] = (byte) (0xC0 | c >> 6);
+                arena[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                arena[pos++] = (byte) (0xF0 | cp >> 18);
+                arena[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                arena[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                arena[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                arena[pos++] = '?';
+            } else {
+                arena[pos++] = (byte) (0xE0 | c >> 12);
+                arena[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                arena[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        arenaSize = pos;
+        return pos - start;
+    }
+
+    private void ensureArena(int bytes) {
+        if (bytes > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(bytes, arena.length * 2));
+        }
+    }
+
+    private String decode(int offset, int length) {
+        return length == NULL_LENGTH ? null : new String(arena, offset, length, StandardCharsets.UTF_8);
+    }
+
+    private static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    private static void setNull(long[] bitmap, int row) {
+        bitmap[row >>> 6] |= 1L << row;
+    }
+
+    private static void clearNull(long[] bitmap, int row) {
+        bitmap[row >>> 6] &= ~(1L << row);
+    }
+
+    private static boolean isNull(long[] bitmap, int row) {
+        return (bitmap[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * A movable view of one row of the batch. Numeric getters read straight
+     * from the column arrays; string getters decode from the arena on each
+     * call. Check the {@code has*} methods before reading a nullable column.
+     */
+    public class Row {
+        private int index;
+
+        private Row() {
+        }
+
+        public Row moveTo(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+            }
+            this.index = index;
+            return this;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getId() {
+            return ids[index];
+        }
+
+        public String getRecipeName() {
+            return decode(nameOffsets[index], nameLengths[index]);
+        }
+
+        public boolean hasNumServings() {
+            return !isNull(servingsNulls, index);
+        }
+
+        public int getNumServings() {
+            return servings[index];
+        }
+
+        public boolean hasPrepTime() {
+            return !isNull(prepTimeNulls, index);
+        }
+
+        public double getPrepTime() {
+            return prepTimes[index];
+        }
+
+        public boolean hasCookTime() {
+            return !isNull(cookTimeNulls, index);
+        }
+
+        public double getCookTime() {
+            return cookTimes[index];
+        }
+
+        public String getNotes() {
+            return decode(notesOffsets[index], notesLengths[index]);
+        }
+
+        /** Copies this row into a standalone {@link Recipe}. */
+        public Recipe toRecipe() {
+            Recipe recipe = new Recipe(getRecipeName(), hasNumServings() ? getNumServings() : null,
+                hasPrepTime() ? getPrepTime() : null, hasCookTime() ? getCookTime() : null, getNotes());
+            recipe.setId(getId());
+            return recipe;
+        }
+
+        @Override
+        public String toString() {
+            return toRecipe().toString();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package recipes.entity;
+
+public class Unit {
+    private Integer unitId;
+    private String unitNameSingular;
+    private String unitNamePlural;
+    
+    // Default constructor
+    public Unit() {
+    }
+    
+    // Constructor with parameters
+    public Unit(Integer unitId, String unitNameSingular, String unitNamePlural) {
+        this.unitId = unitId;
+        this.unitNameSingular = unitNameSingular;
+        this.unitNamePlural = unitNamePlural;
+    }
+    
+    // Getters and setters
+    public Integer getUnitId() {
+        return unitId;
+    }
+    
+    public void setUnitId(Integer unitId) {
+        this.unitId = unitId;
+    }
+    
+    public String getUnitNameSingular() {
+        return unitNameSingular;
+    }
+    
+    public void setUnitNameSingular(String unitNameSingular) {
+        this.unitNameSingular = unitNameSingular;
+    }
+    
+    public String getUnitNamePlural() {
+        return unitNamePlural;
+    }
+    
+    public void setUnitNamePlural(String unitNamePlural) {
+        this.unitNamePlural = unitNamePlural;
+    }
+    
+    @Override
+    public String toString() {
+        return "Unit{" +
+                "unitId=" + unitId +
+                ", unitNameSingular='" + unitNameSingular + '\'' +
+                ", unitNamePlural='" + unitNamePlural + '\'' +
+                '}';
+    }
+}
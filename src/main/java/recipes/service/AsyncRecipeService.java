@@ -0,0 +1,145 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Recipe;
+import recipes.exception.DbException;
+
+/**
+ * Non-blocking facade over {@link RecipeService}. Each call runs on a
+ * dedicated executor and returns a {@link CompletableFuture}.
+ *
+ * At most {@code maxConcurrency} calls touch the database at once; the rest
+ * queue here instead of timing out waiting for a connection. Size it to the
+ * connections the calls can use: the primary pool for writes, plus the
+ * replica pools for reads. It is fixed when the service is built, so build a
+ * new one if {@link DbConnection#reload()} changes the pool sizes.
+ *
+ * The calls run on platform threads, not virtual threads. Connector/J 8.0
+ * guards its socket I/O with {@code synchronized}, which pins a virtual
+ * thread to its carrier for the whole query, so a few slow queries could
+ * occupy every carrier thread and stall unrelated virtual threads.
+ */
+public class AsyncRecipeService implements AutoCloseable {
+    private final RecipeService recipeService;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    public AsyncRecipeService(RecipeService recipeService, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.recipeService = recipeService;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    public CompletableFuture<Recipe> fetchRecipeById(Integer recipeId) {
+        return submit(() -> recipeService.fetchRecipeById(recipeId));
+    }
+
+    /**
+     * Looks up many recipes concurrently. The result keeps the order of
+     * {@code recipeIds}; missing recipes are {@code null}.
+     */
+    public CompletableFuture<List<Recipe>> fetchRecipesByIds(Collection<Integer> recipeIds) {
+        List<CompletableFuture<Recipe>> lookups = new ArrayList<>(recipeIds.size());
+        for (Integer recipeId : recipeIds) {
+            lookups.add(fetchRecipeById(recipeId));
+        }
+
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> {
+                List<Recipe> recipes = new ArrayList<>(lookups.size());
+                for (CompletableFuture<Recipe> lookup : lookups) {
+                    recipes.add(lookup.join());
+                }
+                return recipes;
+            });
+    }
+
+    public CompletableFuture<List<Recipe>> fetchAllRecipes() {
+        return submit(recipeService::fetchAllRecipes);
+    }
+
+    public CompletableFuture<RecipePage> fetchRecipesPage(Integer afterRecipeId, int limit) {
+        return submit(() -> recipeService.fetchRecipesPage(afterRecipeId, limit));
+    }
+
+    public CompletableFuture<Integer> addRecipe(String name, Integer servings, Double prepTime, Double cookTime,
+            String notes) {
+        return submit(() -> recipeService.addRecipe(name, servings, prepTime, cookTime, notes));
+    }
+
+    public CompletableFuture<IngestResult> addRecipes(Iterable<Recipe> recipes, int batchSize) {
+        return submit(() -> recipeService.addRecipes(recipes, batchSize));
+    }
+
+    public CompletableFuture<Void> modifyRecipeDetails(Recipe recipe) {
+        return submit(() -> {
+            recipeService.modifyRecipeDetails(recipe);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteRecipe(Integer recipeId) {
+        return submit(() -> {
+            recipeService.deleteRecipe(recipeId);
+            return null;
+        });
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException("Interrupted while waiting to run a database call", e);
+            }
+            try {
+                return call.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "recipes-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+}
@@ -0,0 +1,251 @@
+package recipes.service;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/**
+ * Imports delimited files into the recipe tables.
+ *
+ * The fast path is {@code LOAD DATA LOCAL INFILE}, fed directly from the
+ * caller's {@link InputStream} through Connector/J's local-infile stream hook,
+ * so nothing is written to a temporary file. It runs on a dedicated
+ * connection opened for the load, the only one allowed to send local files. Rows the server cannot load are
+ * skipped ({@code IGNORE}) and reported from the statement warnings. When the
+ * server has {@code local_infile} switched off, rows are parsed on the client
+ * and written with multi-row INSERTs instead.
+ *
+ * Both paths load the same values. Empty fields become NULL whether quoted
+ * or not, so an empty string cannot be imported. So do {@code \N} in TSV
+ * and an unquoted {@code NULL} in CSV; a quoted {@code "NULL"} is the text.
+ */
+public class CsvImporter {
+    private static final Set<String> TABLES = new HashSet<>(
+        Arrays.asList("recipe", "ingredient", "step", "unit", "category", "recipe_category"));
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    // MySQL error codes for "local infile not allowed" on the server or client side
+    private static final Set<Integer> LOCAL_INFILE_DISABLED = new HashSet<>(Arrays.asList(1148, 3948, 3950));
+    private static final int FALLBACK_BATCH_SIZE = 1_000;
+    // The most placeholders MySQL accepts in one prepared statement
+    private static final int MAX_PLACEHOLDERS = 65_535;
+
+    private final boolean localInfileAllowed;
+
+    public CsvImporter() {
+        this(true);
+    }
+
+    /** {@code localInfileAllowed = false} always takes the INSERT path. */
+    CsvImporter(boolean localInfileAllowed) {
+        this.localInfileAllowed = localInfileAllowed;
+    }
+
+    /**
+     * Loads {@code data} into {@code table}.
+     *
+     * @param columns target column for each field in the file, in file
+     *            order; {@code null} skips that field
+     * @param skipHeader {@code true} if the first line holds column names
+     */
+    public ImportResult importFile(String table, List<String> columns, InputStream data, ImportFormat format,
+            boolean skipHeader) {
+        validate(table, columns);
+
+        // The pooled connection stays borrowed during a LOAD DATA too, so reads stay on the primary until it is done
+        try (Connection conn = DbConnection.getConnection()) {
+            if (localInfileAllowed && isLocalInfileEnabled(conn)) {
+                try (Connection loadConn = DbConnection.openLocalInfileConnection()) {
+                    return loadDataLocalInfile(loadConn, table, columns, data, format, skipHeader);
+                } catch (SQLException e) {
+                    if (!LOCAL_INFILE_DISABLED.contains(e.getErrorCode())) {
+                        throw e;
+                    }
+                }
+            }
+            return insertBatches(conn, table, columns, data, format, skipHeader);
+
+        } catch (SQLException e) {
+            throw new DbException("Error importing into " + table, e);
+        }
+    }
+
+    private ImportResult loadDataLocalInfile(Connection conn, String table, List<String> columns, InputStream data,
+            ImportFormat format, boolean skipHeader) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(data);
+            long loaded = stmt.executeLargeUpdate(buildLoadDataSql(table, columns, format, skipHeader));
+
+            ImportResult result = new ImportResult(true);
+            result.recordLoaded(loaded);
+            for (SQLWarning warning = stmt.getWarnings(); warning != null; warning = warning.getNextWarning()) {
+                result.recordRejected(warning.getMessage());
+            }
+            return result;
+        }
+    }
+
+    private String buildLoadDataSql(String table, List<String> columns, ImportFormat format, boolean skipHeader) {
+        StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'stream' IGNORE INTO TABLE ")
+            .append(table).append(" CHARACTER SET utf8mb4");
+
+        if (format == ImportFormat.CSV) {
+            sql.append(" FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''");
+        } else {
+            sql.append(" FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'");
+        }
+        sql.append(" LINES TERMINATED BY '\\n'");
+        if (skipHeader) {
+            sql.append(" IGNORE 1 LINES");
+        }
+
+        // Every field goes through a user variable so empty values become NULL
+        StringBuilder variables = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String variable = "@f" + i;
+            variables.append(i == 0 ? "" : ", ").append(variable);
+
+            String column = columns.get(i);
+            if (column != null) {
+                // The last field still carries the CR of CRLF line endings
+                String value = i == columns.size() - 1 ? "TRIM(TRAILING '\\r' FROM " + variable + ")" : variable;
+                assignments.append(assignments.length() == 0 ? "" : ", ")
+                    .append(column).append(" = NULLIF(").append(value).append(", '')");
+            }
+        }
+        return sql.append(" (").append(variables).append(") SET ").append(assignments).toString();
+    }
+
+    private ImportResult insertBatches(Connection conn, String table, List<String> columns, InputStream data,
+            ImportFormat format, boolean skipHeader) throws SQLException {
+        List<Integer> fieldIndexes = new ArrayList<>();
+        StringBuilder columnList = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i) != null) {
+                fieldIndexes.add(i);
+                columnList.append(columnList.length() == 0 ? "" : ", ").append(columns.get(i));
+                placeholders.append(placeholders.length() == 0 ? "?" : ", ?");
+            }
+        }
+        String insertSql = "INSERT IGNORE INTO " + table + " (" + columnList + ") VALUES ";
+        String rowPlaceholders = "(" + placeholders + ")";
+        int rowsPerInsert = Math.min(FALLBACK_BATCH_SIZE, MAX_PLACEHOLDERS / fieldIndexes.size());
+
+        ImportResult result = new ImportResult(false);
+        DelimitedReader reader = new DelimitedReader(
+            new BufferedReader(new InputStreamReader(data, StandardCharsets.UTF_8)), format);
+        List<String[]> rows = new ArrayList<>(rowsPerInsert);
+        long line = 0;
+        long firstLine = 0;
+
+        conn.setAutoCommit(false);
+        try {
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                line++;
+                if ((line == 1 && skipHeader) || (record.size() == 1 && record.get(0) == null)) {
+                    continue;
+                }
+                if (record.size() != columns.size()) {
+                    result.recordRejected("Line " + line + ": expected " + columns.size() + " fields but found "
+                        + record.size());
+                    continue;
+                }
+
+                String[] values = new String[fieldIndexes.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = record.get(fieldIndexes.get(i));
+                }
+                if (rows.isEmpty()) {
+                    firstLine = line;
+                }
+                rows.add(values);
+                if (rows.size() == rowsPerInsert) {
+                    insertRows(conn, insertSql, rowPlaceholders, rows, firstLine, line, result);
+                    conn.commit();
+                    rows.clear();
+                }
+            }
+            insertRows(conn, insertSql, rowPlaceholders, rows, firstLine, line, result);
+            conn.commit();
+            return result;
+
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts {@code rows} with one multi-row INSERT IGNORE. Its affected-row
+     * count is the number of rows inserted, so the rest were ignored. JDBC
+     * batch counts cannot tell: with {@code rewriteBatchedStatements} the
+     * driver reports SUCCESS_NO_INFO for every row, ignored or not.
+     */
+    private void insertRows(Connection conn, String insertSql, String rowPlaceholders, List<String[]> rows,
+            long firstLine, long lastLine, ImportResult result) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder(insertSql);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(rowPlaceholders);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int parameter = 1;
+            for (String[] row : rows) {
+                for (String value : row) {
+                    stmt.setString(parameter++, value);
+                }
+            }
+            long inserted = stmt.executeLargeUpdate();
+            result.recordLoaded(inserted);
+            for (long i = inserted; i < rows.size(); i++) {
+                result.recordRejected("Row ignored in lines " + firstLine + " to " + lastLine);
+            }
+        }
+    }
+
+    private boolean isLocalInfileEnabled(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@local_infile")) {
+            return rs.next() && rs.getBoolean(1) && stmt.isWrapperFor(JdbcStatement.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void validate(String table, List<String> columns) {
+        if (!TABLES.contains(table)) {
+            throw new DbException("Cannot import into unknown table " + table);
+        }
+        if (columns.isEmpty() || columns.stream().allMatch(column -> column == null)) {
+            throw new DbException("No columns to import into " + table);
+        }
+        for (String column : columns) {
+            if (column != null && !IDENTIFIER.matcher(column).matches()) {
+                throw new DbException("Invalid column name: " + column);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package recipes.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import recipes.exception.DbException;
+
+/**
+ * Reads CSV (RFC 4180 quoting) or TSV (MySQL backslash escapes) records one
+ * at a time from a {@link Reader}. Used when rows have to be parsed on the
+ * client instead of by LOAD DATA.
+ */
+class DelimitedReader {
+    private final Reader reader;
+    private final ImportFormat format;
+    private int pushedBack = -1;
+
+    DelimitedReader(Reader reader, ImportFormat format) {
+        this.reader = reader;
+        this.format = format;
+    }
+
+    /**
+     * Returns the next record, or {@code null} at end of input. Fields become
+     * {@code null} where LOAD DATA in {@link CsvImporter} loads NULL: empty
+     * fields, quoted or not, {@code \N} in TSV and an unquoted {@code NULL}
+     * in CSV.
+     */
+    List<String> readRecord() {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        boolean nullMarker = false;
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        while (true) {
+            if (c == -1) {
+                if (quoted) {
+                    throw new DbException("Unterminated quoted field in import file");
+                }
+                fields.add(toValue(field, wasQuoted, nullMarker));
+                return fields;
+            }
+            char ch = (char) c;
+
+            if (quoted) {
+                if (ch == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        pushedBack = next;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == format.getSeparator()) {
+                fields.add(toValue(field, wasQuoted, nullMarker));
+                field.setLength(0);
+                wasQuoted = false;
+                nullMarker = false;
+            } else if (ch == '\n') {
+                fields.add(toValue(field, wasQuoted, nullMarker));
+                return fields;
+            } else if (ch == '\r') {
+                // Dropped; CRLF line endings end the record at the LF
+            } else if (ch == '"' && format == ImportFormat.CSV && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (ch == '\\' && format == ImportFormat.TSV) {
+                int escaped = read();
+                if (escaped == 'N' && field.length() == 0) {
+                    nullMarker = true;
+                } else {
+                    field.append(unescape(escaped));
+                }
+            } else {
+                field.append(ch);
+            }
+            c = read();
+        }
+    }
+
+    private String toValue(StringBuilder field, boolean wasQuoted, boolean nullMarker) {
+        if (nullMarker || field.length() == 0) {
+            return null;
+        }
+        if (format == ImportFormat.CSV && !wasQuoted && field.length() == 4 && field.toString().equals("NULL")) {
+            return null;
+        }
+        return field.toString();
+    }
+
+    private static char unescape(int escaped) {
+        switch (escaped) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case '0':
+                return '\0';
+            case -1:
+                throw new DbException("Import file ends with a dangling escape character");
+            default:
+                return (char) escaped;
+        }
+    }
+
+    private int read() {
+        if (pushedBack != -1) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            throw new DbException("Error reading import file", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package recipes.service;
+
+/** Output format of a recipe export. */
+public enum ExportFormat {
+    /** RFC 4180 CSV with a header line. */
+    CSV,
+    /** One JSON object per line. */
+    JSON_LINES
+}
@@ -0,0 +1,69 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/**
+ * {@link RecipeSearch} that runs each query on the server with MySQL
+ * {@code MATCH ... AGAINST} in boolean mode.
+ *
+ * Needs FULLTEXT indexes on {@code recipe(recipe_name, notes)} and
+ * {@code ingredient(ingredient_name)}, which {@link SchemaMigrator} adds
+ * when {@code recipes.db.fullTextIndexes} is set. Nothing is held in
+ * memory, so the write notifications are ignored. InnoDB skips stopwords
+ * and words shorter than {@code innodb_ft_min_token_size}, so very short or
+ * common words match nothing here while they do match in
+ * {@link InvertedIndexSearch}.
+ */
+public class FullTextRecipeSearch implements RecipeSearch {
+    private static final String SELECT_SQL = "SELECT r.recipe_id FROM recipe r WHERE ";
+    private static final String TERM_SQL = "(MATCH (r.recipe_name, r.notes) AGAINST (? IN BOOLEAN MODE) "
+        + "OR r.recipe_id IN (SELECT i.recipe_id FROM ingredient i "
+        + "WHERE MATCH (i.ingredient_name) AGAINST (? IN BOOLEAN MODE)))";
+    private static final String ORDER_SQL = " ORDER BY r.recipe_id LIMIT ?";
+
+    @Override
+    public List<Integer> search(String query, int limit) {
+        SearchQuery parsed = SearchQuery.parse(query);
+        if (parsed.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+
+        // Each term must match the recipe text or one of its ingredients
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        for (int i = 0; i < parsed.size(); i++) {
+            sql.append(i == 0 ? "" : " AND ").append(TERM_SQL);
+        }
+        sql.append(ORDER_SQL);
+
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int parameter = 1;
+            for (int i = 0; i < parsed.size(); i++) {
+                String term = parsed.isPrefix(i) ? parsed.term(i) + "*" : parsed.term(i);
+                stmt.setString(parameter++, term);
+                stmt.setString(parameter++, term);
+            }
+            stmt.setInt(parameter, limit);
+
+            List<Integer> matches = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    matches.add(rs.getInt(1));
+                }
+            }
+            return matches;
+
+        } catch (SQLException e) {
+            throw new DbException("Error searching recipes", e);
+        }
+    }
+}
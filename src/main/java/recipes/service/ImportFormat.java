@@ -0,0 +1,19 @@
+package recipes.service;
+
+/** Layout of a delimited import file. */
+public enum ImportFormat {
+    /** Comma separated, fields optionally enclosed in double quotes. */
+    CSV(','),
+    /** Tab separated, special characters escaped with a backslash. */
+    TSV('\t');
+
+    private final char separator;
+
+    ImportFormat(char separator) {
+        this.separator = separator;
+    }
+
+    public char getSeparator() {
+        return separator;
+    }
+}
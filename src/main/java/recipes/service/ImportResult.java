@@ -0,0 +1,60 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a CSV/TSV import: how many rows were loaded, how many were
+ * rejected, and the first few reasons for rejection.
+ */
+public class ImportResult {
+    private static final int MAX_MESSAGES = 100;
+
+    private final boolean localInfile;
+    private long loadedCount;
+    private long rejectedCount;
+    private final List<String> messages = new ArrayList<>();
+
+    ImportResult(boolean localInfile) {
+        this.localInfile = localInfile;
+    }
+
+    void recordLoaded(long rows) {
+        loadedCount += rows;
+    }
+
+    void recordRejected(String message) {
+        rejectedCount++;
+        if (messages.size() < MAX_MESSAGES) {
+            messages.add(message);
+        }
+    }
+
+    /** {@code true} if the rows went through LOAD DATA LOCAL INFILE, {@code false} for multi-row INSERTs. */
+    public boolean isLocalInfile() {
+        return localInfile;
+    }
+
+    public long getLoadedCount() {
+        return loadedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /** Rejection messages, capped at the first hundred. */
+    public List<String> getMessages() {
+        return Collections.unmodifiableList(messages);
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "localInfile=" + localInfile +
+                ", loadedCount=" + loadedCount +
+                ", rejectedCount=" + rejectedCount +
+                '}';
+    }
+}
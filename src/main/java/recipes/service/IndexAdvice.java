@@ -0,0 +1,65 @@
+package recipes.service;
+
+/**
+ * One finding from the {@link IndexAdvisor}: a table that a statement reads
+ * in full.
+ */
+public class IndexAdvice {
+    private final String sql;
+    private final String table;
+    private final String accessType;
+    private final Long estimatedRows;
+    private final String detail;
+    private final boolean expected;
+
+    IndexAdvice(String sql, String table, String accessType, Long estimatedRows, String detail, boolean expected) {
+        this.sql = sql;
+        this.table = table;
+        this.accessType = accessType;
+        this.estimatedRows = estimatedRows;
+        this.detail = detail;
+        this.expected = expected;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /** The table scanned, or {@code null} if EXPLAIN itself failed. */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * {@code ALL} for a full table scan, {@code index} for a full index scan,
+     * or {@code error} if the statement could not be explained.
+     */
+    public String getAccessType() {
+        return accessType;
+    }
+
+    /** The optimizer's row estimate, when the database reports one. */
+    public Long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /** Possible keys and Extra from EXPLAIN, or the error message. */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * {@code true} when the statement has no WHERE clause and is meant to
+     * read the whole table, such as an export or an index build.
+     */
+    public boolean isExpected() {
+        return expected;
+    }
+
+    @Override
+    public String toString() {
+        return (expected ? "[expected] " : "[FULL SCAN] ") + table + " (" + accessType
+            + (estimatedRows != null ? ", ~" + estimatedRows + " rows" : "") + ")"
+            + (detail != null && !detail.isEmpty() ? " " + detail : "") + ": " + sql;
+    }
+}
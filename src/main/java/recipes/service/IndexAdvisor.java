@@ -0,0 +1,124 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/**
+ * Runs {@code EXPLAIN} on SQL statements and reports every table that is
+ * read with a full table scan ({@code type = ALL}) or a full index scan
+ * ({@code type = index}).
+ *
+ * Placeholders are bound to {@code 1}: as an int after LIMIT and OFFSET,
+ * and as a string elsewhere, which MySQL compares against numeric columns
+ * without losing the index. Besides MySQL's tabular EXPLAIN output, the
+ * single-column plan of H2 in MySQL mode is understood, so the advisor can be
+ * run against a local stand-in database.
+ */
+public class IndexAdvisor {
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(SELECT|UPDATE|DELETE)\\b",
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIMIT_BEFORE = Pattern.compile("\\b(LIMIT|OFFSET)\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern H2_TABLE_SCAN = Pattern.compile("(\\w+)\\.(\\w+)\\.tableScan");
+
+    /**
+     * Explains each SELECT, UPDATE and DELETE in {@code statements} and
+     * returns the full scans found, plus one entry per statement that could
+     * not be explained.
+     */
+    public List<IndexAdvice> advise(Collection<String> statements) {
+        List<IndexAdvice> advice = new ArrayList<>();
+        try (Connection conn = DbConnection.getConnection()) {
+            for (String sql : new TreeSet<>(statements)) {
+                if (EXPLAINABLE.matcher(sql).find()) {
+                    explain(conn, sql, advice);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error running the index advisor", e);
+        }
+        return advice;
+    }
+
+    private void explain(Connection conn, String sql, List<IndexAdvice> advice) {
+        boolean expected = !WHERE.matcher(sql).find();
+        // This form skips the statement cache, so EXPLAINs never evict the application's statements
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            bindPlaceholders(stmt, sql);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (hasColumn(rs.getMetaData(), "type")) {
+                    readMySqlPlan(rs, sql, expected, advice);
+                } else {
+                    readPlanText(rs, sql, expected, advice);
+                }
+            }
+        } catch (SQLException e) {
+            advice.add(new IndexAdvice(sql, null, "error", null, e.getMessage(), false));
+        }
+    }
+
+    private void readMySqlPlan(ResultSet rs, String sql, boolean expected, List<IndexAdvice> advice)
+            throws SQLException {
+        while (rs.next()) {
+            String type = rs.getString("type");
+            if ("ALL".equalsIgnoreCase(type) || "index".equalsIgnoreCase(type)) {
+                long rows = rs.getLong("rows");
+                Long estimatedRows = rs.wasNull() ? null : rows;
+                String detail = "possible_keys=" + rs.getString("possible_keys") + ", Extra=" + rs.getString("Extra");
+                advice.add(new IndexAdvice(sql, rs.getString("table"), type, estimatedRows, detail, expected));
+            }
+        }
+    }
+
+    private void readPlanText(ResultSet rs, String sql, boolean expected, List<IndexAdvice> advice)
+            throws SQLException {
+        while (rs.next()) {
+            Matcher matcher = H2_TABLE_SCAN.matcher(rs.getString(1));
+            while (matcher.find()) {
+                advice.add(new IndexAdvice(sql, matcher.group(2).toLowerCase(Locale.ROOT), "ALL", null, "",
+                    expected));
+            }
+        }
+    }
+
+    private void bindPlaceholders(PreparedStatement stmt, String sql) throws SQLException {
+        int parameter = 0;
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (ch == '\'') {
+                quoted = !quoted;
+            } else if (ch == '?' && !quoted) {
+                parameter++;
+                if (LIMIT_BEFORE.matcher(sql.substring(0, i)).find()) {
+                    stmt.setInt(parameter, 1);
+                } else {
+                    stmt.setString(parameter, "1");
+                }
+            }
+        }
+    }
+
+    private static boolean hasColumn(ResultSetMetaData metaData, String name) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
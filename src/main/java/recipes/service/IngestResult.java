@@ -0,0 +1,74 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk recipe ingest. Each batch is committed or rolled back on
+ * its own, so a failed batch does not undo the batches before or after it.
+ */
+public class IngestResult {
+    private long insertedCount;
+    private long failedCount;
+    private final List<BatchFailure> failures = new ArrayList<>();
+
+    void recordSuccess(int rows) {
+        insertedCount += rows;
+    }
+
+    void recordFailure(long firstRowIndex, int rows, Exception cause) {
+        failedCount += rows;
+        failures.add(new BatchFailure(firstRowIndex, rows, cause));
+    }
+
+    public long getInsertedCount() {
+        return insertedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public List<BatchFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    @Override
+    public String toString() {
+        return "IngestResult{" +
+                "insertedCount=" + insertedCount +
+                ", failedCount=" + failedCount +
+                ", failedBatches=" + failures.size() +
+                '}';
+    }
+
+    /** A batch that was rolled back. Row indexes are zero-based positions in the input. */
+    public static class BatchFailure {
+        private final long firstRowIndex;
+        private final int rowCount;
+        private final Exception cause;
+
+        BatchFailure(long firstRowIndex, int rowCount, Exception cause) {
+            this.firstRowIndex = firstRowIndex;
+            this.rowCount = rowCount;
+            this.cause = cause;
+        }
+
+        public long getFirstRowIndex() {
+            return firstRowIndex;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public Exception getCause() {
+            return cause;
+        }
+    }
+}
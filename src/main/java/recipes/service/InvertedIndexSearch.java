@@ -0,0 +1,336 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+import recipes.exception.DbException;
+
+/**
+ * {@link RecipeSearch} backed by an inverted index held in memory.
+ *
+ * Every word of a recipe's name, notes and ingredient names maps to a
+ * {@link PostingList} of recipe IDs. Words are kept in a sorted map, so a
+ * prefix query is a range scan of the dictionary, and an AND query
+ * intersects the lists smallest first. Queries only take a read lock and
+ * never touch the database.
+ *
+ * The index is built on the first search by scanning the {@code recipe}
+ * table in parallel partitions, tokenizing on every core, and streaming the
+ * {@code ingredient} table, then kept current through the
+ * {@link RecipeSearch} notifications. Changes that arrive while a build is
+ * running are replayed onto the new index before it is published.
+ */
+public class InvertedIndexSearch implements RecipeSearch {
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int RECIPE_BATCH_SIZE = 4_096;
+    private static final String INGREDIENT_SQL = "SELECT recipe_id, ingredient_name FROM ingredient";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object buildLock = new Object();
+    private Index index;
+    // Changes made while a build is running, replayed onto the new index
+    private List<Consumer<Index>> pendingChanges;
+
+    @Override
+    public List<Integer> search(String query, int limit) {
+        SearchQuery parsed = SearchQuery.parse(query);
+        if (parsed.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        ensureBuilt();
+
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            if (current == null) {
+                // Invalidated since ensureBuilt(); the next search rebuilds
+                return Collections.emptyList();
+            }
+            List<PostingList> lists = new ArrayList<>(parsed.size());
+            for (int i = 0; i < parsed.size(); i++) {
+                PostingList list = parsed.isPrefix(i)
+                    ? current.prefixPostings(parsed.term(i))
+                    : current.postings.get(parsed.term(i));
+                if (list == null || list.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                lists.add(list);
+            }
+
+            lists.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+            PostingList result = lists.get(0);
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result = PostingList.and(result, lists.get(i));
+            }
+            ids = result.toArray(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Integer> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matches.add(id);
+        }
+        return matches;
+    }
+
+    @Override
+    public void recipeSaved(Recipe recipe) {
+        String[] terms = terms(recipe.getRecipeName(), recipe.getNotes());
+        int recipeId = recipe.getId();
+        apply(target -> target.setRecipe(recipeId, terms));
+    }
+
+    @Override
+    public void recipeDeleted(Integer recipeId) {
+        apply(target -> target.removeRecipe(recipeId));
+    }
+
+    @Override
+    public void ingredientsAdded(Integer recipeId, List<Ingredient> ingredients) {
+        List<String> names = new ArrayList<>(ingredients.size());
+        for (Ingredient ingredient : ingredients) {
+            names.add(ingredient.getIngredientName());
+        }
+        String[] terms = terms(names.toArray(new String[0]));
+        apply(target -> target.addIngredientTerms(recipeId, terms));
+    }
+
+    @Override
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            index = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Builds a new index from the database and publishes it. */
+    public void rebuild() {
+        synchronized (buildLock) {
+            lock.writeLock().lock();
+            try {
+                pendingChanges = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Index built = null;
+            try {
+                built = load();
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (built != null) {
+                        for (Consumer<Index> change : pendingChanges) {
+                            change.accept(built);
+                        }
+                        index = built;
+                    }
+                    pendingChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getRecipeCount() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.recipeTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InvertedIndexSearch{recipes=" + getRecipeCount() + ", terms=" + getTermCount() + "}";
+    }
+
+    private void ensureBuilt() {
+        if (isBuilt()) {
+            return;
+        }
+        synchronized (buildLock) {
+            if (!isBuilt()) {
+                rebuild();
+            }
+        }
+    }
+
+    private boolean isBuilt() {
+        lock.readLock().lock();
+        try {
+            return index != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Changes before the first build are dropped; the build reads them from the database
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                change.accept(index);
+            }
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Index load() {
+        Index built = new Index();
+        new PartitionedRecipeScan().forEachBatch(PartitionedRecipeScan.defaultPartitions(), RECIPE_BATCH_SIZE,
+            batch -> {
+                int[] ids = new int[batch.size()];
+                String[][] recipeTerms = new String[batch.size()][];
+                batch.forEach(row -> {
+                    ids[row.getIndex()] = row.getId();
+                    recipeTerms[row.getIndex()] = terms(row.getRecipeName(), row.getNotes());
+                });
+                synchronized (built) {
+                    for (int i = 0; i < ids.length; i++) {
+                        built.setRecipe(ids[i], recipeTerms[i]);
+                    }
+                }
+            });
+
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = streamingStatement(conn, INGREDIENT_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                built.addIngredientTerms(rs.getInt(1), terms(rs.getString(2)));
+            }
+            return built;
+
+        } catch (SQLException e) {
+            throw new DbException("Error building the recipe search index", e);
+        }
+    }
+
+    private PreparedStatement streamingStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(STREAMING_FETCH_SIZE);
+        return stmt;
+    }
+
+    private static String[] terms(String... texts) {
+        List<String> terms = new ArrayList<>();
+        for (String text : texts) {
+            SearchQuery.tokenize(text, terms);
+        }
+        return new LinkedHashSet<>(terms).toArray(new String[0]);
+    }
+
+    /**
+     * The term dictionary plus, per recipe, the terms it was indexed under,
+     * so an update or delete knows which posting lists to change.
+     */
+    private static final class Index {
+        private final TreeMap<String, PostingList> postings = new TreeMap<>();
+        private final Map<Integer, String[]> recipeTerms = new HashMap<>();
+        private final Map<Integer, String[]> ingredientTerms = new HashMap<>();
+
+        void setRecipe(int recipeId, String[] terms) {
+            Set<String> before = allTerms(recipeId);
+            recipeTerms.put(recipeId, terms);
+            reindex(recipeId, before, allTerms(recipeId));
+        }
+
+        // Ingredient rows of a recipe the index does not hold are ignored
+        void addIngredientTerms(int recipeId, String[] terms) {
+            if (!recipeTerms.containsKey(recipeId)) {
+                return;
+            }
+            Set<String> before = allTerms(recipeId);
+            Set<String> merged = new LinkedHashSet<>();
+            String[] existing = ingredientTerms.get(recipeId);
+            if (existing != null) {
+                merged.addAll(Arrays.asList(existing));
+            }
+            merged.addAll(Arrays.asList(terms));
+            ingredientTerms.put(recipeId, merged.toArray(new String[0]));
+            reindex(recipeId, before, allTerms(recipeId));
+        }
+
+        void removeRecipe(int recipeId) {
+            Set<String> before = allTerms(recipeId);
+            recipeTerms.remove(recipeId);
+            ingredientTerms.remove(recipeId);
+            reindex(recipeId, before, Collections.<String>emptySet());
+        }
+
+        PostingList prefixPostings(String prefix) {
+            Collection<PostingList> lists =
+                postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+            if (lists.size() <= 1) {
+                return lists.isEmpty() ? null : lists.iterator().next();
+            }
+            return PostingList.or(lists);
+        }
+
+        private Set<String> allTerms(int recipeId) {
+            Set<String> terms = new LinkedHashSet<>();
+            String[] fields = recipeTerms.get(recipeId);
+            if (fields != null) {
+                terms.addAll(Arrays.asList(fields));
+            }
+            String[] ingredients = ingredientTerms.get(recipeId);
+            if (ingredients != null) {
+                terms.addAll(Arrays.asList(ingredients));
+            }
+            return terms;
+        }
+
+        private void reindex(int recipeId, Set<String> before, Set<String> after) {
+            for (String term : before) {
+                if (!after.contains(term)) {
+                    PostingList list = postings.get(term);
+                    if (list != null && list.remove(recipeId) && list.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            for (String term : after) {
+                if (!before.contains(term)) {
+                    postings.computeIfAbsent(term, key -> new PostingList()).add(recipeId);
+                }
+            }
+        }
+    }
+}
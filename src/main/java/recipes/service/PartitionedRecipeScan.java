@@ -0,0 +1,297 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import recipes.dao.DbConnection;
+import recipes.dao.RecipeRowMapper;
+import recipes.entity.Recipe;
+import recipes.entity.RecipeBatch;
+import recipes.exception.DbException;
+
+/**
+ * Reads the recipe table in parallel by splitting the {@code recipe_id} range
+ * into partitions and scanning each one on its own pooled connection.
+ *
+ * Partition bounds come from {@code MIN}/{@code MAX(recipe_id)}, split into
+ * equal widths; recipe IDs are auto-increment, so the partitions hold about
+ * the same number of rows. Each partition is a primary key range scan with
+ * its own streaming result set, so no single connection or core reads the
+ * whole table. Partitions are read through
+ * {@link DbConnection#getReadConnection()}, so they come from replicas
+ * unless this process wrote recently.
+ */
+class PartitionedRecipeScan {
+    private static final String BOUNDS_SQL = "SELECT MIN(recipe_id), MAX(recipe_id) FROM recipe";
+    private static final String RANGE_SQL = "SELECT " + RecipeRowMapper.COLUMNS
+        + " FROM recipe WHERE recipe_id BETWEEN ? AND ? ORDER BY recipe_id";
+    // Tells Connector/J to stream rows one at a time instead of buffering the whole result
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /** A default partition count: one per core, but never more than the pool can serve. */
+    static int defaultPartitions() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), DbConnection.getPool().getMaxSize()));
+    }
+
+    /**
+     * Returns a parallel stream of every recipe in {@code recipe_id} order.
+     * The stream splits into at most {@code partitions} range scans as the
+     * fork/join framework asks for work. Close the stream to release any
+     * connections still open when it stops early.
+     */
+    Stream<Recipe> stream(int partitions) {
+        long[] bounds = bounds();
+        if (bounds == null) {
+            return Stream.empty();
+        }
+        Set<RangeSpliterator> open = ConcurrentHashMap.newKeySet();
+        RangeSpliterator root = new RangeSpliterator(bounds[0], bounds[1], partitions, open);
+        return StreamSupport.stream(root, true).onClose(() -> {
+            DbException failure = null;
+            for (RangeSpliterator spliterator : open) {
+                try {
+                    spliterator.close();
+                } catch (DbException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        });
+    }
+
+    /**
+     * Fills one {@link RecipeBatch} per partition, concurrently, calling
+     * {@code action} each time a batch holds {@code batchSize} rows and once
+     * more for each partition's remainder. {@code action} runs on several
+     * threads at once; each thread's batch is cleared after each call.
+     */
+    void forEachBatch(int partitions, int batchSize, Consumer<? super RecipeBatch> action) {
+        long[] bounds = bounds();
+        if (bounds == null) {
+            return;
+        }
+        List<PartitionTask> tasks = new ArrayList<>(partitions);
+        for (long[] range : split(bounds[0], bounds[1], partitions)) {
+            tasks.add(new PartitionTask(range[0], range[1], batchSize, action));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(tasks.size());
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Returns {@code {min, max}} of {@code recipe_id}, or {@code null} if the table is empty. */
+    private long[] bounds() {
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(BOUNDS_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            if (!rs.next()) {
+                return null;
+            }
+            long min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return null;
+            }
+            return new long[] { min, rs.getLong(2) };
+
+        } catch (SQLException e) {
+            throw new DbException("Error reading the recipe_id range", e);
+        }
+    }
+
+    /** Splits {@code [min, max]} into up to {@code partitions} inclusive ranges of equal width. */
+    static List<long[]> split(long min, long max, int partitions) {
+        long span = max - min + 1;
+        int count = (int) Math.max(1, Math.min(partitions, span));
+        List<long[]> ranges = new ArrayList<>(count);
+        long start = min;
+        for (int i = 0; i < count; i++) {
+            long end = i == count - 1 ? max : start + span / count + (i < span % count ? 1 : 0) - 1;
+            ranges.add(new long[] { start, end });
+            start = end + 1;
+        }
+        return ranges;
+    }
+
+    /** An open streaming query over one range. */
+    private static class RangeCursor implements AutoCloseable {
+        private final Connection conn;
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+        private final RecipeRowMapper mapper;
+
+        private RangeCursor(long from, long to) {
+            Connection connection = DbConnection.getReadConnection();
+            PreparedStatement statement = null;
+            try {
+                statement = connection.prepareStatement(RANGE_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(STREAMING_FETCH_SIZE);
+                statement.setLong(1, from);
+                statement.setLong(2, to);
+                this.rs = statement.executeQuery();
+                this.mapper = new RecipeRowMapper(rs);
+            } catch (SQLException e) {
+                closeQuietly(statement);
+                closeQuietly(connection);
+                throw new DbException("Error scanning recipes " + from + " to " + to, e);
+            }
+            this.conn = connection;
+            this.stmt = statement;
+        }
+
+        @Override
+        public void close() {
+            try {
+                rs.close();
+                stmt.close();
+                conn.close();
+            } catch (SQLException e) {
+                closeQuietly(stmt);
+                closeQuietly(conn);
+                throw new DbException("Error closing recipe scan", e);
+            }
+        }
+
+        private static void closeQuietly(AutoCloseable resource) {
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (Exception ignored) {
+                    // Already failing; the original error is reported
+                }
+            }
+        }
+    }
+
+    /**
+     * Covers an ID range and halves it on {@code trySplit} until the
+     * partition budget is used up. A connection is opened only once a
+     * spliterator starts returning rows, and closed as soon as it runs out.
+     */
+    private static class RangeSpliterator implements Spliterator<Recipe> {
+        private long from;
+        private final long to;
+        private int budget;
+        private final Set<RangeSpliterator> open;
+        private RangeCursor cursor;
+        private boolean done;
+
+        private RangeSpliterator(long from, long to, int budget, Set<RangeSpliterator> open) {
+            this.from = from;
+            this.to = to;
+            this.budget = Math.max(1, budget);
+            this.open = open;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Recipe> action) {
+            if (done) {
+                return false;
+            }
+            try {
+                if (cursor == null) {
+                    cursor = new RangeCursor(from, to);
+                    open.add(this);
+                }
+                if (!cursor.rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(cursor.mapper.map(cursor.rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new DbException("Error scanning recipes " + from + " to " + to, e);
+            }
+        }
+
+        @Override
+        public Spliterator<Recipe> trySplit() {
+            if (cursor != null || done || budget < 2 || to - from < 1) {
+                return null;
+            }
+            long mid = from + (to - from) / 2;
+            int prefixBudget = budget / 2;
+            RangeSpliterator prefix = new RangeSpliterator(from, mid, prefixBudget, open);
+            from = mid + 1;
+            budget -= prefixBudget;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return done ? 0 : to - from + 1;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | DISTINCT;
+        }
+
+        private void close() {
+            done = true;
+            open.remove(this);
+            if (cursor != null) {
+                RangeCursor current = cursor;
+                cursor = null;
+                current.close();
+            }
+        }
+    }
+
+    /** Scans one partition. Tasks are never serialized. */
+    private static class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final int batchSize;
+        private final transient Consumer<? super RecipeBatch> action;
+
+        private PartitionTask(long from, long to, int batchSize, Consumer<? super RecipeBatch> action) {
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            RecipeBatch batch = new RecipeBatch(Math.min(batchSize, 64 * 1024));
+            try (RangeCursor cursor = new RangeCursor(from, to)) {
+                while (cursor.rs.next()) {
+                    cursor.mapper.mapInto(cursor.rs, batch);
+                    if (batch.size() >= batchSize) {
+                        action.accept(batch);
+                        batch.clear();
+                    }
+                }
+            } catch (SQLException e) {
+                throw new DbException("Error scanning recipes " + from + " to " + to, e);
+            }
+            if (!batch.isEmpty()) {
+                action.accept(batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package recipes.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compressed sorted set of non-negative ints, laid out like a roaring bitmap.
+ *
+ * Values are grouped by their high 16 bits. Each group holds its low 16 bits
+ * either in a sorted {@code char[]} (up to {@value #ARRAY_MAX} values, two
+ * bytes each) or in a 65536-bit bitmap (8 KB), whichever is smaller, so dense
+ * ranges of recipe IDs cost about one bit per recipe and sparse ones two
+ * bytes. AND and OR run group by group without expanding to ints.
+ *
+ * Not thread-safe; {@link InvertedIndexSearch} guards its lists with a lock.
+ */
+final class PostingList {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4];
+    private int[] cardinalities = new int[4];
+    private int size;
+
+    boolean add(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, size, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new char[] { low }, 1);
+            return true;
+        }
+
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+            cardinalities[index]++;
+            return true;
+        }
+
+        char[] array = (char[]) container;
+        int position = Arrays.binarySearch(array, 0, cardinality, low);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_MAX) {
+            long[] bitmap = toBitmap(array, cardinality);
+            bitmap[low >>> 6] |= 1L << low;
+            containers[index] = bitmap;
+        } else {
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+                containers[index] = array;
+            }
+            System.arraycopy(array, position, array, position + 1, cardinality - position);
+            array[position] = low;
+        }
+        cardinalities[index]++;
+        return true;
+    }
+
+    boolean remove(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, size, high);
+        if (index < 0) {
+            return false;
+        }
+
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~bit;
+            cardinality--;
+            if (cardinality <= ARRAY_MAX) {
+                containers[index] = toArray(bitmap, cardinality);
+            }
+        } else {
+            char[] array = (char[]) container;
+            int position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+            cardinality--;
+        }
+
+        if (cardinality == 0) {
+            removeContainer(index);
+        } else {
+            cardinalities[index] = cardinality;
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    /** Returns up to {@code limit} values in ascending order. */
+    int[] toArray(int limit) {
+        int[] values = new int[Math.min(limit, cardinality())];
+        int count = 0;
+        for (int i = 0; i < size && count < values.length; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] bitmap = (long[]) container;
+                for (int word = 0; word < BITMAP_WORDS && count < values.length; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0 && count < values.length) {
+                        values[count++] = high | (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) container;
+                for (int j = 0; j < cardinalities[i] && count < values.length; j++) {
+                    values[count++] = high | array[j];
+                }
+            }
+        }
+        return values;
+    }
+
+    /** Returns a new list holding the values present in both lists. */
+    static PostingList and(PostingList a, PostingList b) {
+        PostingList result = new PostingList();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendAnd(a.keys[i], a.containers[i], a.cardinalities[i],
+                    b.containers[j], b.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /** Returns a new list holding the values present in any of the lists. */
+    static PostingList or(Collection<PostingList> lists) {
+        // One accumulator bitmap per high key, filled in a single pass over every list
+        TreeMap<Character, long[]> bitmaps = new TreeMap<>();
+        for (PostingList list : lists) {
+            for (int i = 0; i < list.size; i++) {
+                long[] bitmap = bitmaps.computeIfAbsent(list.keys[i], key -> new long[BITMAP_WORDS]);
+                orInto(bitmap, list.containers[i], list.cardinalities[i]);
+            }
+        }
+
+        PostingList result = new PostingList();
+        for (Map.Entry<Character, long[]> entry : bitmaps.entrySet()) {
+            long[] bitmap = entry.getValue();
+            result.appendBitmap(entry.getKey(), bitmap, cardinality(bitmap));
+        }
+        return result;
+    }
+
+    private void appendAnd(char key, Object a, int aCardinality, Object b, int bCardinality) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] left = (long[]) a;
+            long[] right = (long[]) b;
+            long[] bitmap = new long[BITMAP_WORDS];
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                bitmap[word] = left[word] & right[word];
+            }
+            appendBitmap(key, bitmap, cardinality(bitmap));
+            return;
+        }
+        if (a instanceof long[]) {
+            appendAnd(key, b, bCardinality, a, aCardinality);
+            return;
+        }
+
+        // At least one side is an array: probe the other side for each of its values
+        char[] array = (char[]) a;
+        char[] matches = new char[aCardinality];
+        int count = 0;
+        for (int k = 0; k < aCardinality; k++) {
+            char low = array[k];
+            boolean present = b instanceof long[]
+                ? (((long[]) b)[low >>> 6] & (1L << low)) != 0
+                : Arrays.binarySearch((char[]) b, 0, bCardinality, low) >= 0;
+            if (present) {
+                matches[count++] = low;
+            }
+        }
+        if (count > 0) {
+            insertContainer(size, key, matches, count);
+        }
+    }
+
+    private static void orInto(long[] target, Object container, int cardinality) {
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                target[word] |= bitmap[word];
+            }
+        } else {
+            char[] array = (char[]) container;
+            for (int k = 0; k < cardinality; k++) {
+                target[array[k] >>> 6] |= 1L << array[k];
+            }
+        }
+    }
+
+    private void appendBitmap(char key, long[] bitmap, int cardinality) {
+        if (cardinality == 0) {
+            return;
+        }
+        insertContainer(size, key, cardinality <= ARRAY_MAX ? toArray(bitmap, cardinality) : bitmap, cardinality);
+    }
+
+    private void insertContainer(int index, char key, Object container, int cardinality) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = cardinality;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private static long[] toBitmap(char[] array, int cardinality) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int k = 0; k < cardinality; k++) {
+            bitmap[array[k] >>> 6] |= 1L << array[k];
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        char[] array = new char[cardinality];
+        int count = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                array[count++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+
+    private static int cardinality(long[] bitmap) {
+        int cardinality = 0;
+        for (long word : bitmap) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+}
@@ -0,0 +1,210 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import recipes.dao.DbConnection;
+import recipes.dao.RecipeRowMapper;
+import recipes.entity.Category;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+import recipes.entity.Step;
+import recipes.entity.Unit;
+import recipes.exception.DbException;
+
+/**
+ * Loads recipes together with their ingredients, steps and categories.
+ *
+ * However many recipes are requested, each chunk of IDs costs exactly four
+ * set-based queries (recipes, ingredients, steps, categories) on one
+ * connection, and each child row is attached to its recipe in a single pass
+ * through a map keyed by ID. Unit and category names come from the
+ * {@link ReferenceDataCache} rather than from joins. IN lists are padded to
+ * a few fixed sizes so the number of distinct statements, and therefore of
+ * cached prepared statements, stays small.
+ */
+class RecipeAggregateLoader {
+    private static final int[] IN_LIST_SIZES = { 1, 10, 100, 1000 };
+
+    private static final String RECIPE_SQL = "SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe WHERE recipe_id IN ";
+    private static final String INGREDIENT_SQL = "SELECT ingredient_id, recipe_id, ingredient_name, "
+        + "instruction, ingredient_order, amount, unit_id FROM ingredient WHERE recipe_id IN ";
+    private static final String INGREDIENT_ORDER = " ORDER BY recipe_id, ingredient_order, ingredient_id";
+    private static final String STEP_SQL = "SELECT step_id, recipe_id, step_order, step_text FROM step WHERE recipe_id IN ";
+    private static final String STEP_ORDER = " ORDER BY recipe_id, step_order, step_id";
+    private static final String CATEGORY_SQL =
+        "SELECT recipe_id, category_id FROM recipe_category WHERE recipe_id IN ";
+    private static final String CATEGORY_ORDER = " ORDER BY recipe_id, category_id";
+
+    private final ReferenceDataCache referenceData;
+
+    RecipeAggregateLoader(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
+    }
+
+    /**
+     * Returns the requested recipes with their children, in the order of
+     * {@code recipeIds}. IDs that do not exist are left out.
+     */
+    List<Recipe> load(Collection<Integer> recipeIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(recipeIds));
+        Map<Integer, Recipe> recipes = new LinkedHashMap<>(ids.size() * 2);
+        int maxChunk = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+
+        try (Connection conn = DbConnection.getReadConnection()) {
+            for (int from = 0; from < ids.size(); from += maxChunk) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + maxChunk, ids.size()));
+                loadChunk(conn, chunk, recipes);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error fetching recipe aggregates", e);
+        }
+
+        List<Recipe> result = new ArrayList<>(recipes.size());
+        for (Integer id : ids) {
+            Recipe recipe = recipes.get(id);
+            if (recipe != null) {
+                result.add(recipe);
+            }
+        }
+        return result;
+    }
+
+    private void loadChunk(Connection conn, List<Integer> ids, Map<Integer, Recipe> recipes) throws SQLException {
+        int listSize = paddedSize(ids.size());
+        String inList = placeholders(listSize);
+        ReferenceLookup lookup = new ReferenceLookup();
+
+        try (PreparedStatement stmt = conn.prepareStatement(RECIPE_SQL + inList)) {
+            bindIds(stmt, ids, listSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                RecipeRowMapper mapper = new RecipeRowMapper(rs);
+                while (rs.next()) {
+                    Recipe recipe = mapper.map(rs);
+                    recipes.put(recipe.getId(), recipe);
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(INGREDIENT_SQL + inList + INGREDIENT_ORDER)) {
+            bindIds(stmt, ids, listSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Recipe recipe = recipes.get(rs.getInt(2));
+                    if (recipe != null) {
+                        recipe.getIngredients().add(mapIngredient(rs, lookup));
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(STEP_SQL + inList + STEP_ORDER)) {
+            bindIds(stmt, ids, listSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Recipe recipe = recipes.get(rs.getInt(2));
+                    if (recipe != null) {
+                        Step step = new Step(rs.getString(4));
+                        step.setStepId(rs.getInt(1));
+                        step.setRecipeId(recipe.getId());
+                        step.setStepOrder(rs.getInt(3));
+                        recipe.getSteps().add(step);
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(CATEGORY_SQL + inList + CATEGORY_ORDER)) {
+            bindIds(stmt, ids, listSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Recipe recipe = recipes.get(rs.getInt(1));
+                    if (recipe != null) {
+                        recipe.getCategories().add(lookup.category(rs.getInt(2)));
+                    }
+                }
+            }
+        }
+    }
+
+    private Ingredient mapIngredient(ResultSet rs, ReferenceLookup lookup) throws SQLException {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setIngredientId(rs.getInt(1));
+        ingredient.setRecipeId(rs.getInt(2));
+        ingredient.setIngredientName(rs.getString(3));
+        ingredient.setInstruction(rs.getString(4));
+        int order = rs.getInt(5);
+        ingredient.setIngredientOrder(rs.wasNull() ? null : order);
+        ingredient.setAmount(rs.getBigDecimal(6));
+        int unitId = rs.getInt(7);
+        if (!rs.wasNull()) {
+            ingredient.setUnit(lookup.unit(unitId));
+        }
+        return ingredient;
+    }
+
+    /**
+     * Resolves IDs against the reference data snapshot. An ID missing from
+     * the snapshot was added since it was loaded, so the snapshot is
+     * refreshed, at most once per chunk.
+     */
+    private class ReferenceLookup {
+        private ReferenceDataCache.Snapshot snapshot = referenceData.snapshot();
+        private boolean refreshed;
+
+        Unit unit(int unitId) {
+            Unit unit = snapshot.getUnit(unitId);
+            if (unit == null && !refreshed) {
+                refresh();
+                unit = snapshot.getUnit(unitId);
+            }
+            return unit != null ? unit : new Unit(unitId, null, null);
+        }
+
+        Category category(int categoryId) {
+            Category category = snapshot.getCategory(categoryId);
+            if (category == null && !refreshed) {
+                refresh();
+                category = snapshot.getCategory(categoryId);
+            }
+            return category != null ? category : new Category(categoryId, null);
+        }
+
+        private void refresh() {
+            snapshot = referenceData.refresh();
+            refreshed = true;
+        }
+    }
+
+    private static int paddedSize(int count) {
+        for (int size : IN_LIST_SIZES) {
+            if (count <= size) {
+                return size;
+            }
+        }
+        return count;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 3 + 2).append('(');
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ", ?");
+        }
+        return builder.append(')').toString();
+    }
+
+    // Unused slots repeat the last ID, which does not change the result
+    private static void bindIds(PreparedStatement stmt, List<Integer> ids, int listSize) throws SQLException {
+        for (int i = 0; i < listSize; i++) {
+            stmt.setInt(i + 1, ids.get(Math.min(i, ids.size() - 1)));
+        }
+    }
+}
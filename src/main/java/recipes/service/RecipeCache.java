@@ -0,0 +1,143 @@
+package recipes.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import recipes.entity.Recipe;
+
+/**
+ * Bounded, read-through LRU cache of recipes keyed by ID, with a time-to-live
+ * on each entry.
+ *
+ * Callers always get their own copy of a cached recipe, so changing a
+ * returned object never changes what other readers see. Loads that overlap an
+ * invalidation are not cached, which keeps a slow read from putting back a
+ * value that a local write has just replaced.
+ */
+public class RecipeCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Integer, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long loads;
+    private long totalLoadNanos;
+
+    public RecipeCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /**
+     * Returns the cached recipe, or loads it with {@code loader} and caches it.
+     * Missing recipes ({@code null} from the loader) are not cached.
+     */
+    public Recipe get(Integer recipeId, Function<Integer, Recipe> loader) {
+        long generation;
+        synchronized (this) {
+            CacheEntry entry = entries.get(recipeId);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits++;
+                return new Recipe(entry.recipe);
+            }
+            if (entry != null) {
+                entries.remove(recipeId);
+                evictions++;
+            }
+            misses++;
+            generation = invalidations;
+        }
+
+        long start = System.nanoTime();
+        Recipe loaded = loader.apply(recipeId);
+        long loadNanos = System.nanoTime() - start;
+
+        synchronized (this) {
+            loads++;
+            totalLoadNanos += loadNanos;
+            if (loaded != null && generation == invalidations) {
+                store(recipeId, new Recipe(loaded));
+            }
+        }
+        return loaded;
+    }
+
+    public synchronized void put(Recipe recipe) {
+        invalidations++;
+        store(recipe.getId(), new Recipe(recipe));
+    }
+
+    public synchronized void invalidate(Integer recipeId) {
+        invalidations++;
+        entries.remove(recipeId);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getLoadCount() {
+        return loads;
+    }
+
+    public synchronized double getAverageLoadMillis() {
+        return loads == 0 ? 0.0 : totalLoadNanos / (loads * 1_000_000.0);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RecipeCache{size=%d, hitRatio=%.3f, evictions=%d, loads=%d, avgLoadMs=%.3f}",
+            entries.size(), getHitRatio(), evictions, loads, getAverageLoadMillis());
+    }
+
+    private void store(Integer recipeId, Recipe recipe) {
+        entries.put(recipeId, new CacheEntry(recipe, System.nanoTime() + ttlNanos));
+
+        Iterator<Map.Entry<Integer, CacheEntry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static class CacheEntry {
+        private final Recipe recipe;
+        private final long expiresAt;
+
+        private CacheEntry(Recipe recipe, long expiresAt) {
+            this.recipe = recipe;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
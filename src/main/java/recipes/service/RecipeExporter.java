@@ -0,0 +1,342 @@
+package recipes.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/**
+ * Streams recipes from the database straight into CSV or JSON Lines.
+ *
+ * Column values are copied from the {@link ResultSet} to a buffered writer
+ * without building {@code Recipe} objects, and rows are streamed or fetched
+ * through a cursor, so memory stays flat however many rows are exported.
+ *
+ * With children included, ingredients and steps are read by two more
+ * queries ordered by {@code recipe_id} and merged with the recipe rows as
+ * they go. This avoids a server-side sort of a join or union. All three
+ * read one consistent snapshot, so every child written belongs to a
+ * recipe written. That export runs on a dedicated connection to the
+ * primary; a recipes-only export streams from a pooled read connection.
+ */
+public class RecipeExporter {
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int CURSOR_FETCH_SIZE = 1_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String RECIPE_SQL = "SELECT recipe_id, recipe_name, num_serving, prep_time, cook_time, notes "
+        + "FROM recipe ORDER BY recipe_id";
+    private static final String INGREDIENT_SQL = "SELECT i.recipe_id, i.ingredient_order, i.ingredient_name, "
+        + "i.instruction, i.amount, u.unit_name_singular, u.unit_name_plural "
+        + "FROM ingredient i LEFT JOIN unit u ON u.unit_id = i.unit_id "
+        + "ORDER BY i.recipe_id, i.ingredient_order, i.ingredient_id";
+    private static final String STEP_SQL = "SELECT recipe_id, step_order, step_text "
+        + "FROM step ORDER BY recipe_id, step_order, step_id";
+
+    private static final String RECIPE_CSV_HEADER = "recipe_id,recipe_name,num_serving,prep_time,cook_time,notes";
+    private static final String DENORMALISED_CSV_HEADER = "record_type," + RECIPE_CSV_HEADER
+        + ",item_order,item_text,instruction,amount,unit";
+
+    /**
+     * Writes every recipe to {@code out} and returns the number of recipes
+     * written. {@code out} is flushed but not closed.
+     *
+     * @param withChildren include each recipe's ingredients and steps
+     * @param gzip compress the output
+     */
+    public long export(OutputStream out, ExportFormat format, boolean withChildren, boolean gzip) {
+        try {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(compressed != null ? compressed : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+            long count = withChildren ? exportWithChildren(writer, format) : exportRecipes(writer, format);
+
+            writer.flush();
+            if (compressed != null) {
+                compressed.finish();
+            }
+            out.flush();
+            return count;
+
+        } catch (IOException e) {
+            throw new DbException("Error writing recipe export", e);
+        } catch (SQLException e) {
+            throw new DbException("Error reading recipes for export", e);
+        }
+    }
+
+    private long exportRecipes(Writer writer, ExportFormat format) throws SQLException, IOException {
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = streamingStatement(conn, RECIPE_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            if (format == ExportFormat.CSV) {
+                writer.write(RECIPE_CSV_HEADER);
+                writer.write('\n');
+            }
+
+            long count = 0;
+            while (rs.next()) {
+                if (format == ExportFormat.CSV) {
+                    writeRecipeCsv(writer, rs);
+                    writer.write('\n');
+                } else {
+                    writeRecipeJsonFields(writer, rs);
+                    writer.write("}\n");
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Runs the three queries on one connection, in one read-only REPEATABLE
+     * READ transaction, so they all read the snapshot taken by the first
+     * one. A MySQL connection streams only one result at a time, so the rows
+     * are fetched through server-side cursors instead. Those need a
+     * connection opened for them, which is closed when the export is done,
+     * so none of its settings reach the pool.
+     */
+    private long exportWithChildren(Writer writer, ExportFormat format) throws SQLException, IOException {
+        try (Connection conn = DbConnection.openCursorFetchConnection()) {
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try {
+                long count = writeWithChildren(conn, writer, format);
+                conn.commit();
+                return count;
+            } finally {
+                // A failed export leaves the transaction open; it only read
+                conn.rollback();
+            }
+        }
+    }
+
+    private long writeWithChildren(Connection conn, Writer writer, ExportFormat format)
+            throws SQLException, IOException {
+        try (PreparedStatement recipeStmt = cursorStatement(conn, RECIPE_SQL);
+             PreparedStatement ingredientStmt = cursorStatement(conn, INGREDIENT_SQL);
+             PreparedStatement stepStmt = cursorStatement(conn, STEP_SQL);
+             ResultSet recipes = recipeStmt.executeQuery();
+             ResultSet ingredients = ingredientStmt.executeQuery();
+             ResultSet steps = stepStmt.executeQuery()) {
+
+            if (format == ExportFormat.CSV) {
+                writer.write(DENORMALISED_CSV_HEADER);
+                writer.write('\n');
+            }
+
+            boolean moreIngredients = ingredients.next();
+            boolean moreSteps = steps.next();
+            long count = 0;
+
+            while (recipes.next()) {
+                int recipeId = recipes.getInt(1);
+
+                // Children of recipes that no longer exist are skipped
+                while (moreIngredients && ingredients.getInt(1) < recipeId) {
+                    moreIngredients = ingredients.next();
+                }
+                while (moreSteps && steps.getInt(1) < recipeId) {
+                    moreSteps = steps.next();
+                }
+
+                if (format == ExportFormat.CSV) {
+                    writer.write("recipe,");
+                    writeRecipeCsv(writer, recipes);
+                    writer.write(",,,,,\n");
+                    while (moreIngredients && ingredients.getInt(1) == recipeId) {
+                        writer.write("ingredient,");
+                        writeRecipeCsv(writer, recipes);
+                        writer.write(',');
+                        writeCsv(writer, ingredients.getString(2));
+                        writer.write(',');
+                        writeCsv(writer, ingredients.getString(3));
+                        writer.write(',');
+                        writeCsv(writer, ingredients.getString(4));
+                        writer.write(',');
+                        writeCsv(writer, ingredients.getString(5));
+                        writer.write(',');
+                        writeCsv(writer, unitName(ingredients));
+                        writer.write('\n');
+                        moreIngredients = ingredients.next();
+                    }
+                    while (moreSteps && steps.getInt(1) == recipeId) {
+                        writer.write("step,");
+                        writeRecipeCsv(writer, recipes);
+                        writer.write(',');
+                        writeCsv(writer, steps.getString(2));
+                        writer.write(',');
+                        writeCsv(writer, steps.getString(3));
+                        writer.write(",,,\n");
+                        moreSteps = steps.next();
+                    }
+                } else {
+                    writeRecipeJsonFields(writer, recipes);
+                    writer.write(",\"ingredients\":[");
+                    boolean first = true;
+                    while (moreIngredients && ingredients.getInt(1) == recipeId) {
+                        writer.write(first ? "{" : ",{");
+                        first = false;
+                        writeJsonField(writer, "ingredient_order", ingredients.getString(2), true, true);
+                        writeJsonField(writer, "ingredient_name", ingredients.getString(3), false, false);
+                        writeJsonField(writer, "instruction", ingredients.getString(4), false, false);
+                        BigDecimal amount = ingredients.getBigDecimal(5);
+                        writeJsonField(writer, "amount", amount == null ? null : amount.toPlainString(), true, false);
+                        writeJsonField(writer, "unit", unitName(ingredients), false, false);
+                        writer.write('}');
+                        moreIngredients = ingredients.next();
+                    }
+                    writer.write("],\"steps\":[");
+                    first = true;
+                    while (moreSteps && steps.getInt(1) == recipeId) {
+                        writer.write(first ? "{" : ",{");
+                        first = false;
+                        writeJsonField(writer, "step_order", steps.getString(2), true, true);
+                        writeJsonField(writer, "step_text", steps.getString(3), false, false);
+                        writer.write('}');
+                        moreSteps = steps.next();
+                    }
+                    writer.write("]}\n");
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private PreparedStatement streamingStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(STREAMING_FETCH_SIZE);
+        return stmt;
+    }
+
+    private PreparedStatement cursorStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(CURSOR_FETCH_SIZE);
+        return stmt;
+    }
+
+    private static String unitName(ResultSet ingredients) throws SQLException {
+        BigDecimal amount = ingredients.getBigDecimal(5);
+        boolean plural = amount != null && amount.compareTo(BigDecimal.ONE) != 0;
+        return ingredients.getString(plural ? 7 : 6);
+    }
+
+    private static void writeRecipeCsv(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writeCsv(writer, rs.getString(1));
+        writer.write(',');
+        writeCsv(writer, rs.getString(2));
+        writer.write(',');
+        writeCsv(writer, rs.getString(3));
+        writer.write(',');
+        writeCsv(writer, numberOrNull(rs, 4));
+        writer.write(',');
+        writeCsv(writer, numberOrNull(rs, 5));
+        writer.write(',');
+        writeCsv(writer, rs.getString(6));
+    }
+
+    /** Writes the recipe fields of a JSON object, leaving the object open. */
+    private static void writeRecipeJsonFields(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write('{');
+        writeJsonField(writer, "recipe_id", rs.getString(1), true, true);
+        writeJsonField(writer, "recipe_name", rs.getString(2), false, false);
+        writeJsonField(writer, "num_serving", rs.getString(3), true, false);
+        writeJsonField(writer, "prep_time", numberOrNull(rs, 4), true, false);
+        writeJsonField(writer, "cook_time", numberOrNull(rs, 5), true, false);
+        writeJsonField(writer, "notes", rs.getString(6), false, false);
+    }
+
+    private static String numberOrNull(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : Double.toString(value);
+    }
+
+    private static void writeCsv(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') {
+                writer.write('"');
+            }
+            writer.write(ch);
+        }
+        writer.write('"');
+    }
+
+    private static void writeJsonField(Writer writer, String name, String value, boolean number, boolean first)
+            throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        writer.write('"');
+        writer.write(name);
+        writer.write("\":");
+        if (value == null) {
+            writer.write("null");
+        } else if (number) {
+            writer.write(value);
+        } else {
+            writeJsonString(writer, value);
+        }
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) ch));
+                    } else {
+                        writer.write(ch);
+                    }
+                    break;
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,58 @@
+package recipes.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import recipes.entity.Recipe;
+import recipes.exception.DbException;
+
+/**
+ * One page of recipes in {@code recipe_id} order. The continuation token is
+ * opaque to callers; pass it back to fetch the page that follows.
+ */
+public class RecipePage {
+    private static final String TOKEN_PREFIX = "r1:";
+
+    private final List<Recipe> recipes;
+    private final String nextPageToken;
+
+    RecipePage(List<Recipe> recipes, String nextPageToken) {
+        this.recipes = Collections.unmodifiableList(recipes);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Recipe> getRecipes() {
+        return recipes;
+    }
+
+    /** Token for the next page, or {@code null} if this is the last page. */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+
+    static String encodeToken(int lastRecipeId) {
+        byte[] raw = (TOKEN_PREFIX + lastRecipeId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    static Integer decodeToken(String token) {
+        if (token == null) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!raw.startsWith(TOKEN_PREFIX)) {
+                throw new DbException("Invalid page token: " + token);
+            }
+            return Integer.valueOf(raw.substring(TOKEN_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new DbException("Invalid page token: " + token, e);
+        }
+    }
+}
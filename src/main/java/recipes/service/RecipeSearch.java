@@ -0,0 +1,37 @@
+package recipes.service;
+
+import java.util.List;
+
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+
+/**
+ * Full-text search over recipe names, notes and ingredient names.
+ *
+ * A query is a list of words that must all match (AND). A word ending in
+ * {@code *} matches any indexed word starting with it. Matching ignores case
+ * and punctuation.
+ *
+ * {@link RecipeService} reports every write through the notification
+ * methods, so a backend that keeps its own index can stay current. Backends
+ * that read the database directly can ignore them.
+ */
+public interface RecipeSearch {
+
+    /** Returns the IDs of matching recipes in ascending order, at most {@code limit}. */
+    List<Integer> search(String query, int limit);
+
+    /** A recipe was inserted, or its name or notes changed. */
+    default void recipeSaved(Recipe recipe) {
+    }
+
+    default void recipeDeleted(Integer recipeId) {
+    }
+
+    default void ingredientsAdded(Integer recipeId, List<Ingredient> ingredients) {
+    }
+
+    /** Tables were changed in bulk; any in-memory state must be rebuilt. */
+    default void invalidate() {
+    }
+}
@@ -1,105 +1,179 @@
 package recipes.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import recipes.entity.Ingredient;
 import recipes.entity.Recipe;
+import recipes.entity.RecipeBatch;
+import recipes.entity.Step;
+import recipes.entity.Unit;
 import recipes.dao.DbConnection;
+import recipes.dao.RecipeRowMapper;
+import recipes.dao.SqlCatalog;
 import recipes.exception.DbException;
 
 public class RecipeService {
-    private static final String SCHEMA_FILE = "recipe_schema.sql";
+    private static final String UPDATE_RECIPE_SQL =
+        "UPDATE recipe SET recipe_name = ?, notes = ?, num_serving = ?, prep_time = ?, cook_time = ? WHERE recipe_id = ?";
+    private static final String INSERT_RECIPE_SQL =
+        "INSERT INTO recipe (recipe_name, num_serving, prep_time, cook_time, notes) VALUES (?, ?, ?, ?, ?)";
+    private static final String LOCK_RECIPE_SQL = "SELECT recipe_id FROM recipe WHERE recipe_id = ? FOR UPDATE";
+    private static final String MAX_INGREDIENT_ORDER_SQL =
+        "SELECT COALESCE(MAX(ingredient_order), 0) FROM ingredient WHERE recipe_id = ?";
+    private static final String INSERT_INGREDIENT_SQL = "INSERT INTO ingredient "
+        + "(recipe_id, unit_id, ingredient_name, instruction, ingredient_order, amount) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_STEPS_SQL = "DELETE FROM step WHERE recipe_id = ?";
+    private static final String INSERT_STEP_SQL =
+        "INSERT INTO step (recipe_id, step_order, step_text) VALUES (?, ?, ?)";
+    private static final int DEFAULT_INGEST_BATCH_SIZE = 1_000;
+    // Tells Connector/J to stream rows one at a time instead of buffering the whole result
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int SCRIPT_BATCH_SIZE = 500;
+    private static final int SCRIPT_COMMIT_EVERY = 10_000;
+    private static final int RECIPE_CACHE_SIZE = 10_000;
+    private static final long RECIPE_CACHE_TTL_MILLIS = 5 * 60_000;
+    private static final long STATS_TTL_MILLIS = 60_000;
 
-    public void createAndPopulatedTables() {
-        loadFromFile(SCHEMA_FILE);
+    private final RecipeCache recipeCache = new RecipeCache(RECIPE_CACHE_SIZE, RECIPE_CACHE_TTL_MILLIS);
+    private volatile RecipeWriteBehindQueue writeBehind;
+    private final CsvImporter csvImporter = new CsvImporter();
+    private final RecipeExporter recipeExporter = new RecipeExporter();
+    private final ReferenceDataCache referenceData = new ReferenceDataCache();
+    private final RecipeAggregateLoader aggregateLoader = new RecipeAggregateLoader(referenceData);
+    private final PartitionedRecipeScan partitionedScan = new PartitionedRecipeScan();
+    private final RecipeStats stats = new RecipeStats(referenceData, partitionedScan, STATS_TTL_MILLIS);
+    private volatile RecipeSearch search = new InvertedIndexSearch();
+    private ScriptLoader scriptLoader = new ScriptLoader(SCRIPT_BATCH_SIZE, SCRIPT_COMMIT_EVERY,
+        ScriptLoader.loggingProgress());
+
+    /**
+     * Changes how SQL scripts are chunked: {@code batchSize} statements per
+     * JDBC batch and a commit every {@code commitEvery} statements.
+     */
+    public void setScriptChunking(int batchSize, int commitEvery, ScriptLoader.ProgressListener listener) {
+        scriptLoader = new ScriptLoader(batchSize, commitEvery, listener);
     }
 
-    private void loadFromFile(String fileName) {
-        String content = readFileContent(fileName);
-        List<String> sqlStatements = convertContentToSqlStatements(content);
-        sqlStatements.forEach(line -> System.out.println("SQL Statement: " + line));
-        executeBatch(sqlStatements);
+    /**
+     * Sends SQL script progress to {@code listener} instead of the log, keeping
+     * the current chunking.
+     */
+    public void setScriptProgressListener(ScriptLoader.ProgressListener listener) {
+        scriptLoader = scriptLoader.withListener(listener);
     }
 
-    private void executeBatch(List<String> sqlBatch) {
-        try (Connection conn = DbConnection.getConnection()) {
-            startTransaction(conn);
-            
-            try (Statement stmt = conn.createStatement()) {
-                for (String sql : sqlBatch) {
-                    stmt.addBatch(sql);
-                }
-                stmt.executeBatch();
-                commitTransaction(conn);
-            } catch (Exception e) {
-                rollbackTransaction(conn);
-                throw new DbException("Error executing batch", e);
-            }
-        } catch (SQLException e) {
-            throw new DbException("Error getting connection", e);
+    /** Drops and recreates every table at the latest schema revision. */
+    public void createAndPopulatedTables() {
+        try {
+            new SchemaMigrator(scriptLoader).recreate();
+        } finally {
+            referenceData.invalidate();
+            search.invalidate();
+            stats.invalidate();
         }
     }
 
-    private List<String> convertContentToSqlStatements(String content) {
-        content = removeComments(content);
-        content = replaceWhitespaceSequenceWithSingleSpace(content);
-        return extractLinesContent(content);
+    /**
+     * Runs a SQL script from the file system. The script is parsed as it is
+     * read, so it can be far larger than the heap.
+     */
+    public void loadScript(Path scriptFile) {
+        try (SqlScriptParser statements = new SqlScriptParser(
+                Files.newBufferedReader(scriptFile, StandardCharsets.UTF_8))) {
+            scriptLoader.load(scriptFile.getFileName().toString(), statements);
+        } catch (IOException e) {
+            throw new DbException("Error reading " + scriptFile, e);
+        }
     }
 
-    private List<String> extractLinesContent(String content) {
-        List<String> lines = new LinkedList<>();
-        while (!content.isEmpty()) {
-            int semicolon = content.indexOf(";");
-            if (semicolon == -1) {
-                if (!content.isBlank()) {
-                    lines.add(content.trim());
-                }
-                content = "";
-            } else {
-                lines.add(content.substring(0, semicolon).trim());
-                content = content.substring(semicolon + 1);
-            }
-        }
-        return lines;
+    /**
+     * Applies any schema revisions the database does not have yet and
+     * returns the resulting version. See {@link SchemaMigrator}.
+     */
+    public int migrateSchema() {
+        return new SchemaMigrator(scriptLoader).migrate();
     }
 
-    private String replaceWhitespaceSequenceWithSingleSpace(String content) {
-        return content.replaceAll("\\s+", " ");
+    /**
+     * Loads units and categories into memory now rather than on the first
+     * lookup. Call once the schema exists.
+     */
+    public void preloadReferenceData() {
+        referenceData.preload();
     }
 
-    private String removeComments(String content) {
-        StringBuilder builder = new StringBuilder(content);
-        int commentPos = 0;
-        while ((commentPos = builder.indexOf("-- ", commentPos)) != -1) {
-            int eolPos = builder.indexOf("\n", commentPos + 1);
-            if (eolPos == -1) {
-                builder.replace(commentPos, builder.length(), "");
-            } else {
-                builder.replace(commentPos, eolPos + 1, "");
-            }
-        }
-        return builder.toString();
+    /**
+     * Runs EXPLAIN on every statement issued through the connection pool so
+     * far and returns the ones that scan a whole table or index. See
+     * {@link IndexAdvisor}.
+     */
+    public List<IndexAdvice> adviseIndexes() {
+        return new IndexAdvisor().advise(SqlCatalog.getStatements());
     }
 
-    private String readFileContent(String fileName) {
+    /**
+     * Imports a CSV or TSV file into one of the recipe tables, through LOAD
+     * DATA LOCAL INFILE when the server allows it and multi-row INSERTs
+     * otherwise. See {@link CsvImporter}.
+     */
+    public ImportResult importFile(String table, List<String> columns, InputStream data, ImportFormat format,
+            boolean skipHeader) {
         try {
-            java.nio.file.Path path = java.nio.file.Paths.get(getClass().getClassLoader().getResource(fileName).toURI());
-            return java.nio.file.Files.readString(path);
-        } catch (Exception e) {
-            throw new DbException(e);
+            return csvImporter.importFile(table, columns, data, format, skipHeader);
+        } finally {
+            if (table.equals("recipe")) {
+                recipeCache.invalidateAll();
+                search.invalidate();
+            } else if (table.equals("ingredient")) {
+                search.invalidate();
+            } else if (table.equals("unit") || table.equals("category")) {
+                referenceData.invalidate();
+            }
         }
     }
 
-    public void addRecipe(String name, Integer servings, Double prepTime, Double cookTime, String notes) {
-        String sql = "INSERT INTO recipe (recipe_name, num_serving, prep_time, cook_time, notes) VALUES (?, ?, ?, ?, ?)";
+    /**
+     * Streams every recipe to {@code out} in the given format. Returns the
+     * number of recipes written; {@code out} is not closed.
+     */
+    public long exportRecipes(OutputStream out, ExportFormat format) {
+        return recipeExporter.export(out, format, false, false);
+    }
+
+    /**
+     * Streams every recipe to {@code out}, optionally with its ingredients
+     * and steps and optionally gzip-compressed. See {@link RecipeExporter}.
+     */
+    public long exportRecipes(OutputStream out, ExportFormat format, boolean withChildren, boolean gzip) {
+        return recipeExporter.export(out, format, withChildren, gzip);
+    }
+
+    /**
+     * Inserts a recipe and returns its generated ID.
+     */
+    public Integer addRecipe(String name, Integer servings, Double prepTime, Double cookTime, String notes) {
         try (Connection conn = DbConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(INSERT_RECIPE_SQL, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, name);
             if (servings != null) stmt.setInt(2, servings);
@@ -118,27 +192,298 @@ public class RecipeService {
             if (rowsAffected == 0) {
                 throw new DbException("Failed to insert recipe.");
             }
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                Integer recipeId = keys.next() ? keys.getInt(1) : null;
+                if (recipeId != null) {
+                    recipeCache.invalidate(recipeId);
+                    Recipe added = new Recipe(name, servings, prepTime, cookTime, notes);
+                    added.setId(recipeId);
+                    search.recipeSaved(added);
+                }
+                return recipeId;
+            }
         } catch (SQLException e) {
             throw new DbException("Error adding recipe", e);
         }
     }
 
-    public List<Recipe> fetchAllRecipes() {
-        String sql = "SELECT * FROM recipe";
+    public IngestResult addRecipes(Iterable<Recipe> recipes) {
+        return addRecipes(recipes, DEFAULT_INGEST_BATCH_SIZE);
+    }
+
+    /**
+     * Inserts recipes in batches of {@code batchSize}, one transaction per
+     * batch. The input is consumed lazily, so it may be a stream over a file
+     * of any size. Generated IDs are written back into the {@link Recipe}
+     * objects. A batch that fails is rolled back and recorded in the result;
+     * ingest carries on with the next batch.
+     */
+    public IngestResult addRecipes(Iterable<Recipe> recipes, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+
+        IngestResult result = new IngestResult();
+        List<Recipe> batch = new ArrayList<>(batchSize);
+        long rowIndex = 0;
+
         try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_RECIPE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            startTransaction(conn);
+
+            for (Recipe recipe : recipes) {
+                batch.add(recipe);
+                if (batch.size() == batchSize) {
+                    insertBatch(conn, stmt, batch, rowIndex, result);
+                    rowIndex += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                insertBatch(conn, stmt, batch, rowIndex, result);
+            }
+            return result;
+
+        } catch (SQLException e) {
+            throw new DbException("Error adding recipes", e);
+        }
+    }
+
+    private void insertBatch(Connection conn, PreparedStatement stmt, List<Recipe> batch, long firstRowIndex,
+            IngestResult result) throws SQLException {
+        try {
+            for (Recipe recipe : batch) {
+                bindRecipe(stmt, recipe);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (Recipe recipe : batch) {
+                    if (!keys.next()) {
+                        break;
+                    }
+                    recipe.setId(keys.getInt(1));
+                    recipeCache.invalidate(recipe.getId());
+                }
+            }
+            commitTransaction(conn);
+            result.recordSuccess(batch.size());
+            for (Recipe recipe : batch) {
+                if (recipe.getId() != null) {
+                    search.recipeSaved(recipe);
+                }
+            }
+
+        } catch (SQLException e) {
+            stmt.clearBatch();
+            rollbackTransaction(conn);
+            for (Recipe recipe : batch) {
+                recipe.setId(null);
+            }
+            result.recordFailure(firstRowIndex, batch.size(), e);
+        }
+    }
+
+    private void bindRecipe(PreparedStatement stmt, Recipe recipe) throws SQLException {
+        stmt.setString(1, recipe.getRecipeName());
+
+        if (recipe.getNumServings() != null) stmt.setInt(2, recipe.getNumServings());
+        else stmt.setNull(2, java.sql.Types.INTEGER);
+
+        if (recipe.getPrepTime() != null) stmt.setDouble(3, recipe.getPrepTime());
+        else stmt.setNull(3, java.sql.Types.DOUBLE);
+
+        if (recipe.getCookTime() != null) stmt.setDouble(4, recipe.getCookTime());
+        else stmt.setNull(4, java.sql.Types.DOUBLE);
+
+        if (recipe.getNotes() != null) stmt.setString(5, recipe.getNotes());
+        else stmt.setNull(5, java.sql.Types.VARCHAR);
+    }
+
+    /**
+     * Appends ingredients to a recipe in one batched transaction. They are
+     * numbered after the recipe's existing ingredients, in list order, and
+     * their generated IDs, recipe ID, order and unit are written back into
+     * the {@link Ingredient} objects. The unit is optional. A unit given only
+     * by name is resolved from the reference data cache; an unknown unit
+     * name fails before anything is written.
+     */
+    public void addIngredients(Integer recipeId, List<Ingredient> ingredients) {
+        if (ingredients.isEmpty()) {
+            return;
+        }
+        List<Unit> units = new ArrayList<>(ingredients.size());
+        for (Ingredient ingredient : ingredients) {
+            units.add(resolveUnit(ingredient.getUnit()));
+        }
+
+        try (Connection conn = DbConnection.getConnection()) {
+            startTransaction(conn);
+
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_INGREDIENT_SQL,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                lockRecipe(conn, recipeId);
+                int order = maxIngredientOrder(conn, recipeId);
+
+                for (int i = 0; i < ingredients.size(); i++) {
+                    Ingredient ingredient = ingredients.get(i);
+                    stmt.setInt(1, recipeId);
+                    if (units.get(i) != null) {
+                        stmt.setInt(2, units.get(i).getUnitId());
+                    } else {
+                        stmt.setNull(2, Types.INTEGER);
+                    }
+                    stmt.setString(3, ingredient.getIngredientName());
+                    stmt.setString(4, ingredient.getInstruction());
+                    stmt.setInt(5, order + i + 1);
+                    stmt.setBigDecimal(6, ingredient.getAmount());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                List<Integer> ids = generatedKeys(stmt, ingredients.size());
+                commitTransaction(conn);
+
+                for (int i = 0; i < ingredients.size(); i++) {
+                    Ingredient ingredient = ingredients.get(i);
+                    ingredient.setIngredientId(ids.get(i));
+                    ingredient.setRecipeId(recipeId);
+                    ingredient.setIngredientOrder(order + i + 1);
+                    ingredient.setUnit(units.get(i));
+                }
+                search.ingredientsAdded(recipeId, ingredients);
+
+            } catch (Exception e) {
+                rollbackTransaction(conn);
+                throw e instanceof DbException ? (DbException) e : new DbException("Error adding ingredients", e);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error getting connection", e);
+        }
+    }
+
+    /**
+     * Replaces all steps of a recipe in one batched transaction. The steps
+     * are numbered 1..n in list order, and their generated IDs, recipe ID
+     * and order are written back into the {@link Step} objects.
+     */
+    public void replaceSteps(Integer recipeId, List<Step> steps) {
+        try (Connection conn = DbConnection.getConnection()) {
+            startTransaction(conn);
+
+            try (PreparedStatement delete = conn.prepareStatement(DELETE_STEPS_SQL);
+                 PreparedStatement insert = conn.prepareStatement(INSERT_STEP_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                lockRecipe(conn, recipeId);
+                delete.setInt(1, recipeId);
+                delete.executeUpdate();
+
+                List<Integer> ids = Collections.emptyList();
+                if (!steps.isEmpty()) {
+                    for (int i = 0; i < steps.size(); i++) {
+                        insert.setInt(1, recipeId);
+                        insert.setInt(2, i + 1);
+                        insert.setString(3, steps.get(i).getStepText());
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    ids = generatedKeys(insert, steps.size());
+                }
+                commitTransaction(conn);
+
+                for (int i = 0; i < steps.size(); i++) {
+                    Step step = steps.get(i);
+                    step.setStepId(ids.get(i));
+                    step.setRecipeId(recipeId);
+                    step.setStepOrder(i + 1);
+                }
+
+            } catch (Exception e) {
+                rollbackTransaction(conn);
+                throw e instanceof DbException ? (DbException) e : new DbException("Error replacing steps", e);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error getting connection", e);
+        }
+    }
+
+    /**
+     * Looks up a unit by its singular or plural name, ignoring case.
+     * Returns {@code null} if there is no such unit.
+     */
+    public Unit findUnit(String name) {
+        return referenceData.snapshot().findUnit(name);
+    }
+
+    /**
+     * Aggregate statistics computed in SQL, cached for a minute. See
+     * {@link RecipeStats}.
+     */
+    public RecipeStats getStats() {
+        return stats;
+    }
+
+    /** Returns the cached copy of the {@code unit} and {@code category} tables. */
+    public ReferenceDataCache getReferenceData() {
+        return referenceData;
+    }
+
+    // Locking the parent row serialises concurrent writers to the same recipe, so order numbers stay unique
+    private void lockRecipe(Connection conn, Integer recipeId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(LOCK_RECIPE_SQL)) {
+            stmt.setInt(1, recipeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new DbException("Recipe with ID=" + recipeId + " does not exist.");
+                }
+            }
+        }
+    }
+
+    private int maxIngredientOrder(Connection conn, Integer recipeId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(MAX_INGREDIENT_ORDER_SQL)) {
+            stmt.setInt(1, recipeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private List<Integer> generatedKeys(PreparedStatement stmt, int expected) throws SQLException {
+        List<Integer> ids = new ArrayList<>(expected);
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            while (keys.next()) {
+                ids.add(keys.getInt(1));
+            }
+        }
+        while (ids.size() < expected) {
+            ids.add(null);
+        }
+        return ids;
+    }
+
+    private Unit resolveUnit(Unit unit) {
+        if (unit == null || unit.getUnitId() != null) {
+            return unit;
+        }
+        String name = unit.getUnitNameSingular() != null ? unit.getUnitNameSingular() : unit.getUnitNamePlural();
+        Unit known = name == null ? null : findUnit(name);
+        if (known == null) {
+            throw new DbException("Unknown unit: " + name);
+        }
+        return known;
+    }
+
+    public List<Recipe> fetchAllRecipes() {
+        String sql = "SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe";
+        try (Connection conn = DbConnection.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
+            RecipeRowMapper mapper = new RecipeRowMapper(rs);
             List<Recipe> recipes = new ArrayList<>();
             while (rs.next()) {
-                Recipe recipe = new Recipe();
-                recipe.setId(rs.getInt("recipe_id"));
-                recipe.setRecipeName(rs.getString("recipe_name"));
-                recipe.setNumServings(rs.getInt("num_serving"));
-                recipe.setPrepTime(rs.getDouble("prep_time"));
-                recipe.setCookTime(rs.getDouble("cook_time"));
-                recipe.setNotes(rs.getString("notes"));
-                recipes.add(recipe);
+                recipes.add(mapper.map(rs));
             }
             return recipes;
 
@@ -147,23 +492,287 @@ public class RecipeService {
         }
     }
 
+    /**
+     * Streams every recipe without loading the table into memory. Rows are
+     * read from the server as the stream is consumed, so a slow consumer
+     * simply slows the read down. The stream holds a pooled connection until
+     * it is closed; use it in a try-with-resources block.
+     */
+    public Stream<Recipe> streamAllRecipes() {
+        String sql = "SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe";
+        Connection conn = DbConnection.getReadConnection();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        RecipeRowMapper mapper;
+
+        try {
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAMING_FETCH_SIZE);
+            rs = stmt.executeQuery();
+            mapper = new RecipeRowMapper(rs);
+        } catch (SQLException e) {
+            closeAll(rs, stmt, conn);
+            throw new DbException("Error fetching recipes", e);
+        }
+
+        ResultSet rows = rs;
+        Spliterator<Recipe> spliterator = new Spliterators.AbstractSpliterator<Recipe>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Recipe> action) {
+                try {
+                    if (!rows.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rows));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DbException("Error fetching recipes", e);
+                }
+            }
+        };
+
+        PreparedStatement statement = stmt;
+        return StreamSupport.stream(spliterator, false)
+            .onClose(() -> closeAll(rows, statement, conn));
+    }
+
+    /**
+     * Calls {@code action} for each recipe as it arrives from the server and
+     * releases the connection when done.
+     */
+    public void forEachRecipe(Consumer<? super Recipe> action) {
+        try (Stream<Recipe> recipes = streamAllRecipes()) {
+            recipes.forEach(action);
+        }
+    }
+
+    /**
+     * Reads the whole recipe table into one columnar {@link RecipeBatch}.
+     * Far smaller than {@link #fetchAllRecipes()} for large tables, since no
+     * per-row objects are kept.
+     */
+    public RecipeBatch fetchAllRecipesBatch() {
+        RecipeBatch batch = new RecipeBatch();
+        forEachRecipeBatch(Integer.MAX_VALUE, batch, b -> {
+        });
+        return batch;
+    }
+
+    /**
+     * Streams every recipe into a reused {@link RecipeBatch} of up to
+     * {@code batchSize} rows, calling {@code action} each time it fills and
+     * once more for the remainder. The batch is cleared after each call, so
+     * {@code action} must copy anything it wants to keep.
+     */
+    public void forEachRecipeBatch(int batchSize, Consumer<? super RecipeBatch> action) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        RecipeBatch batch = new RecipeBatch(Math.min(batchSize, 64 * 1024));
+        forEachRecipeBatch(batchSize, batch, b -> {
+            action.accept(b);
+            b.clear();
+        });
+    }
+
+    private void forEachRecipeBatch(int batchSize, RecipeBatch batch, Consumer<RecipeBatch> onFull) {
+        String sql = "SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe";
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                 ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(STREAMING_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                RecipeRowMapper mapper = new RecipeRowMapper(rs);
+                while (rs.next()) {
+                    mapper.mapInto(rs, batch);
+                    if (batch.size() >= batchSize) {
+                        onFull.accept(batch);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                onFull.accept(batch);
+            }
+
+        } catch (SQLException e) {
+            throw new DbException("Error fetching recipes", e);
+        }
+    }
+
+    /**
+     * Streams every recipe in parallel: the {@code recipe_id} range is split
+     * into one partition per core (capped at the pool size), and each
+     * partition is read on its own pooled connection. Use it in a
+     * try-with-resources block so connections are released if the stream
+     * stops early.
+     */
+    public Stream<Recipe> parallelStreamAllRecipes() {
+        return parallelStreamAllRecipes(PartitionedRecipeScan.defaultPartitions());
+    }
+
+    public Stream<Recipe> parallelStreamAllRecipes(int partitions) {
+        return partitionedScan.stream(checkPartitions(partitions));
+    }
+
+    /**
+     * Like {@link #forEachRecipeBatch(int, Consumer)} but reads the
+     * partitions concurrently, each on its own connection and into its own
+     * batch. {@code action} is called from several threads at once.
+     */
+    public void forEachRecipeBatchParallel(int partitions, int batchSize, Consumer<? super RecipeBatch> action) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        partitionedScan.forEachBatch(checkPartitions(partitions), batchSize, action);
+    }
+
+    private int checkPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be at least 1");
+        }
+        return Math.min(partitions, DbConnection.getPool().getMaxSize());
+    }
+
+    private void closeAll(AutoCloseable... resources) {
+        DbException failure = null;
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = new DbException("Error closing resources", e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the page after {@code pageToken}, a
+     * {@link RecipePage#getNextPageToken()} from the previous page, or the
+     * first page when it is {@code null}.
+     */
+    public RecipePage fetchRecipesPageAfterToken(String pageToken, int limit) {
+        return fetchRecipesPage(RecipePage.decodeToken(pageToken), limit);
+    }
+
+    /**
+     * Returns up to {@code limit} recipes with an ID greater than
+     * {@code afterRecipeId} (or from the start when it is {@code null}). The
+     * query seeks on the primary key, so every page costs the same no matter
+     * how far into the table it is.
+     */
+    public RecipePage fetchRecipesPage(Integer afterRecipeId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+
+        String sql = "SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe WHERE recipe_id > ? ORDER BY recipe_id LIMIT ?";
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, afterRecipeId == null ? 0 : afterRecipeId);
+            // One extra row tells us whether another page exists
+            stmt.setInt(2, limit + 1);
+
+            List<Recipe> recipes = new ArrayList<>(limit);
+            boolean hasMore = false;
+            try (ResultSet rs = stmt.executeQuery()) {
+                RecipeRowMapper mapper = new RecipeRowMapper(rs);
+                while (rs.next()) {
+                    if (recipes.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    recipes.add(mapper.map(rs));
+                }
+            }
+
+            String nextToken = hasMore ? RecipePage.encodeToken(recipes.get(recipes.size() - 1).getId()) : null;
+            return new RecipePage(recipes, nextToken);
+
+        } catch (SQLException e) {
+            throw new DbException("Error fetching recipe page", e);
+        }
+    }
+
     public Recipe fetchRecipeById(Integer recipeId) {
-        String sql = "SELECT * FROM recipe WHERE recipe_id = ?";
-        try (Connection conn = DbConnection.getConnection();
+        RecipeWriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            Recipe pending = queue.getPending(recipeId);
+            if (pending != null) {
+                return pending;
+            }
+        }
+        return recipeCache.get(recipeId, this::loadRecipeById);
+    }
+
+    /**
+     * Returns the recipe with its ingredients, steps and categories, or
+     * {@code null} if it does not exist.
+     */
+    public Recipe fetchRecipeAggregate(Integer recipeId) {
+        List<Recipe> recipes = aggregateLoader.load(Collections.singletonList(recipeId));
+        return recipes.isEmpty() ? null : recipes.get(0);
+    }
+
+    /**
+     * Returns the recipes with their ingredients, steps and categories, in
+     * the order of {@code recipeIds}, using a fixed number of queries per
+     * thousand recipes rather than several per recipe.
+     */
+    public List<Recipe> fetchRecipeAggregates(Collection<Integer> recipeIds) {
+        return aggregateLoader.load(recipeIds);
+    }
+
+    /**
+     * Returns the IDs of recipes whose name, notes or ingredients contain
+     * every word of {@code query}; a word ending in {@code *} matches as a
+     * prefix. See {@link RecipeSearch}.
+     */
+    public List<Integer> searchRecipeIds(String query, int limit) {
+        return search.search(query, limit);
+    }
+
+    /** Searches like {@link #searchRecipeIds} and loads the matching recipes with their children. */
+    public List<Recipe> searchRecipes(String query, int limit) {
+        List<Integer> ids = search.search(query, limit);
+        return ids.isEmpty() ? Collections.<Recipe>emptyList() : fetchRecipeAggregates(ids);
+    }
+
+    /**
+     * Switches the search backend, for example to {@link FullTextRecipeSearch}.
+     * The default is an {@link InvertedIndexSearch} built on first use.
+     */
+    public void setSearch(RecipeSearch search) {
+        this.search = search;
+    }
+
+    public RecipeSearch getSearch() {
+        return search;
+    }
+
+    public RecipeCache getRecipeCache() {
+        return recipeCache;
+    }
+
+    private Recipe loadRecipeById(Integer recipeId) {
+        String sql = "SELECT " + RecipeRowMapper.COLUMNS + " FROM recipe WHERE recipe_id = ?";
+        try (Connection conn = DbConnection.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, recipeId);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Recipe recipe = new Recipe();
-                    recipe.setId(rs.getInt("recipe_id"));
-                    recipe.setRecipeName(rs.getString("recipe_name"));
-                    recipe.setNumServings(rs.getInt("num_serving"));
-                    recipe.setPrepTime(rs.getDouble("prep_time"));
-                    recipe.setCookTime(rs.getDouble("cook_time"));
-                    recipe.setNotes(rs.getString("notes"));
-                    return recipe;
+                    return new RecipeRowMapper(rs).map(rs);
                 }
                 return null;
             }
@@ -173,47 +782,85 @@ public class RecipeService {
         }
     }
 
+    /**
+     * Switches {@link #modifyRecipeDetails(Recipe)} to write-behind mode:
+     * edits are queued, coalesced per recipe and written in batched
+     * transactions by a background thread. In this mode an edit of a recipe
+     * that does not exist is dropped silently at flush time instead of
+     * raising an error, and an edit that fails {@code maxAttempts} writes in
+     * a row is dropped and logged. Queued edits are flushed by
+     * {@link DbConnection#shutdown()}, before the pools close.
+     */
+    public synchronized RecipeWriteBehindQueue enableWriteBehind(int capacity, int flushThreshold,
+            long flushIntervalMillis, long offerTimeoutMillis, int maxAttempts) {
+        if (writeBehind != null) {
+            throw new IllegalStateException("Write-behind is already enabled");
+        }
+        RecipeWriteBehindQueue queue = new RecipeWriteBehindQueue(this::updateRecipes, capacity, flushThreshold,
+            flushIntervalMillis, offerTimeoutMillis, maxAttempts);
+        DbConnection.closeBeforeShutdown(queue);
+        writeBehind = queue;
+        return queue;
+    }
+
+    /**
+     * Flushes queued edits and returns {@link #modifyRecipeDetails(Recipe)}
+     * to writing each edit synchronously.
+     */
+    public synchronized void disableWriteBehind() {
+        RecipeWriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            writeBehind = null;
+            DbConnection.removeBeforeShutdown(queue);
+            queue.close();
+        }
+    }
+
     public void modifyRecipeDetails(Recipe recipe) {
-        if (!updateRecipe(recipe)) {
+        RecipeWriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.enqueue(recipe);
+            recipeCache.invalidate(recipe.getId());
+            search.recipeSaved(recipe);
+            return;
+        }
+
+        boolean updated;
+        try {
+            updated = updateRecipe(recipe);
+        } finally {
+            recipeCache.invalidate(recipe.getId());
+        }
+        if (!updated) {
             throw new DbException("Recipe with ID=" + recipe.getId() + " does not exist.");
         }
+        search.recipeSaved(recipe);
     }
 
     public void deleteRecipe(Integer recipeId) {
-        if (!deleteRecipeById(recipeId)) {
+        RecipeWriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.discard(recipeId);
+        }
+
+        boolean deleted;
+        try {
+            deleted = deleteRecipeById(recipeId);
+        } finally {
+            recipeCache.invalidate(recipeId);
+        }
+        if (!deleted) {
             throw new DbException("Recipe with ID=" + recipeId + " does not exist.");
         }
+        search.recipeDeleted(recipeId);
     }
 
     private boolean updateRecipe(Recipe recipe) {
-        String sql = "UPDATE recipe SET recipe_name = ?, notes = ?, num_serving = ?, prep_time = ?, cook_time = ? WHERE recipe_id = ?";
-        
         try (Connection conn = DbConnection.getConnection()) {
             startTransaction(conn);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, recipe.getRecipeName());
-                stmt.setString(2, recipe.getNotes());
-                
-                if (recipe.getNumServings() != null) {
-                    stmt.setInt(3, recipe.getNumServings());
-                } else {
-                    stmt.setNull(3, java.sql.Types.INTEGER);
-                }
-                
-                if (recipe.getPrepTime() != null) {
-                    stmt.setDouble(4, recipe.getPrepTime());
-                } else {
-                    stmt.setNull(4, java.sql.Types.DOUBLE);
-                }
-                
-                if (recipe.getCookTime() != null) {
-                    stmt.setDouble(5, recipe.getCookTime());
-                } else {
-                    stmt.setNull(5, java.sql.Types.DOUBLE);
-                }
-                
-                stmt.setInt(6, recipe.getId());
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_RECIPE_SQL)) {
+                bindRecipeUpdate(stmt, recipe);
                 
                 int rowsAffected = stmt.executeUpdate();
                 commitTransaction(conn);
@@ -229,6 +876,60 @@ public class RecipeService {
         }
     }
 
+    /**
+     * Writes a batch of recipe updates in one transaction. Used by the
+     * write-behind queue.
+     */
+    private void updateRecipes(List<Recipe> recipes) {
+        try (Connection conn = DbConnection.getConnection()) {
+            startTransaction(conn);
+
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_RECIPE_SQL)) {
+                for (Recipe recipe : recipes) {
+                    bindRecipeUpdate(stmt, recipe);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                commitTransaction(conn);
+
+            } catch (Exception e) {
+                rollbackTransaction(conn);
+                throw new DbException("Error updating recipes", e);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error getting connection", e);
+        } finally {
+            for (Recipe recipe : recipes) {
+                recipeCache.invalidate(recipe.getId());
+            }
+        }
+    }
+
+    private void bindRecipeUpdate(PreparedStatement stmt, Recipe recipe) throws SQLException {
+        stmt.setString(1, recipe.getRecipeName());
+        stmt.setString(2, recipe.getNotes());
+        
+        if (recipe.getNumServings() != null) {
+            stmt.setInt(3, recipe.getNumServings());
+        } else {
+            stmt.setNull(3, java.sql.Types.INTEGER);
+        }
+        
+        if (recipe.getPrepTime() != null) {
+            stmt.setDouble(4, recipe.getPrepTime());
+        } else {
+            stmt.setNull(4, java.sql.Types.DOUBLE);
+        }
+        
+        if (recipe.getCookTime() != null) {
+            stmt.setDouble(5, recipe.getCookTime());
+        } else {
+            stmt.setNull(5, java.sql.Types.DOUBLE);
+        }
+        
+        stmt.setInt(6, recipe.getId());
+    }
+
     private boolean deleteRecipeById(Integer recipeId) {
         String sql = "DELETE FROM recipe WHERE recipe_id = ?";
         
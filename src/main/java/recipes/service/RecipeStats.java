@@ -0,0 +1,361 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Category;
+import recipes.entity.RecipeBatch;
+import recipes.exception.DbException;
+
+/**
+ * Aggregate statistics over the recipe tables.
+ *
+ * Counts, distributions and frequencies are computed by MySQL with
+ * {@code GROUP BY} queries, so only the grouped rows cross the wire. Time
+ * percentiles come from one grouped query per column: the server returns
+ * each distinct time with its count and the percentiles are read off the
+ * cumulative counts. Metrics SQL cannot express are computed by
+ * {@link #aggregate} and {@link #summarize}, which reduce over a parallel
+ * partitioned scan of the recipe table.
+ *
+ * Every result is cached for the configured time-to-live, and concurrent
+ * callers asking for the same uncached result share one query. Results are
+ * immutable, except whatever a custom {@link #aggregate} returns.
+ * {@link #aggregate} and {@link #summarize} cache under caller-chosen keys,
+ * each in its own namespace: a key must name one computation, because a
+ * second computation under the same key gets the first one's result.
+ */
+public class RecipeStats {
+    private static final String RECIPE_COUNT_SQL = "SELECT COUNT(*) FROM recipe";
+    private static final String CATEGORY_COUNTS_SQL =
+        "SELECT category_id, COUNT(*) FROM recipe_category GROUP BY category_id";
+    private static final String SERVINGS_SQL =
+        "SELECT num_serving, COUNT(*) FROM recipe WHERE num_serving IS NOT NULL GROUP BY num_serving";
+    private static final String PREP_TIME_SQL =
+        "SELECT prep_time, COUNT(*) FROM recipe WHERE prep_time IS NOT NULL GROUP BY prep_time ORDER BY prep_time";
+    private static final String COOK_TIME_SQL =
+        "SELECT cook_time, COUNT(*) FROM recipe WHERE cook_time IS NOT NULL GROUP BY cook_time ORDER BY cook_time";
+    private static final String TOP_INGREDIENTS_SQL = "SELECT ingredient_name, COUNT(DISTINCT recipe_id) AS recipes "
+        + "FROM ingredient GROUP BY ingredient_name ORDER BY recipes DESC, ingredient_name LIMIT ?";
+    private static final int SCAN_BATCH_SIZE = 4_096;
+    // Top-ingredient limits are rounded up to a power of two, so at most 32 lists are cached
+    private static final int MAX_ROUNDED_LIMIT = 1 << 30;
+
+    private final ReferenceDataCache referenceData;
+    private final PartitionedRecipeScan scan;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, CachedResult> results = new ConcurrentHashMap<>();
+
+    RecipeStats(ReferenceDataCache referenceData, PartitionedRecipeScan scan, long ttlMillis) {
+        this.referenceData = referenceData;
+        this.scan = scan;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    public long getRecipeCount() {
+        return cached("recipeCount", () -> {
+            try (Connection conn = DbConnection.getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(RECIPE_COUNT_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Returns how many recipes each category holds, largest first. Categories
+     * with no recipes are included with a count of 0.
+     */
+    public List<Frequency> getRecipesPerCategory() {
+        return cached("recipesPerCategory", () -> {
+            Map<Integer, Long> counts = new HashMap<>();
+            try (Connection conn = DbConnection.getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(CATEGORY_COUNTS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+
+            ReferenceDataCache.Snapshot snapshot = referenceData.snapshot();
+            List<Frequency> frequencies = new ArrayList<>();
+            for (Category category : snapshot.getCategories()) {
+                Long count = counts.remove(category.getCategoryId());
+                frequencies.add(new Frequency(category.getCategoryName(), count == null ? 0 : count));
+            }
+            // Categories added since the snapshot was taken
+            counts.forEach((id, count) -> frequencies.add(new Frequency("category " + id, count)));
+            frequencies.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.name.compareTo(b.name));
+            return Collections.unmodifiableList(frequencies);
+        });
+    }
+
+    /** Returns the number of recipes for each serving count, in ascending order of servings. */
+    public SortedMap<Integer, Long> getServingsDistribution() {
+        return cached("servings", () -> {
+            SortedMap<Integer, Long> distribution = new TreeMap<>();
+            try (Connection conn = DbConnection.getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(SERVINGS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    distribution.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+            return Collections.unmodifiableSortedMap(distribution);
+        });
+    }
+
+    public Distribution getPrepTimeDistribution() {
+        return cached("prepTime", () -> distribution(PREP_TIME_SQL));
+    }
+
+    public Distribution getCookTimeDistribution() {
+        return cached("cookTime", () -> distribution(COOK_TIME_SQL));
+    }
+
+    /**
+     * Returns the {@code limit} ingredient names used by the most recipes,
+     * most common first.
+     */
+    public List<Frequency> getTopIngredients(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        int fetched = limit > MAX_ROUNDED_LIMIT ? Integer.MAX_VALUE : Integer.highestOneBit(limit * 2 - 1);
+        List<Frequency> top = cached("topIngredients:" + fetched, () -> {
+            List<Frequency> frequencies = new ArrayList<>(Math.min(fetched, 1_024));
+            try (Connection conn = DbConnection.getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(TOP_INGREDIENTS_SQL)) {
+                stmt.setInt(1, fetched);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        frequencies.add(new Frequency(rs.getString(1), rs.getLong(2)));
+                    }
+                }
+            }
+            return Collections.unmodifiableList(frequencies);
+        });
+        return top.size() <= limit ? top : top.subList(0, limit);
+    }
+
+    /**
+     * Computes a metric in the JVM by reducing over every recipe row, using a
+     * parallel partitioned scan. Each batch of rows is accumulated into its
+     * own container from {@code supplier}, and the containers are merged with
+     * {@code combiner}. The result is cached under {@code key}, which must be
+     * unique to this computation; keys never collide with those of
+     * {@link #summarize}.
+     */
+    public <A> A aggregate(String key, Supplier<A> supplier, BiConsumer<A, ? super RecipeBatch.Row> accumulator,
+            BinaryOperator<A> combiner) {
+        return scanAndReduce("aggregate:" + key, supplier, accumulator, combiner);
+    }
+
+    /**
+     * Summarizes a numeric metric derived from each recipe, such as total
+     * time per serving, over a parallel scan. Rows for which {@code metric}
+     * returns NaN are skipped. The result is cached under {@code key}, which
+     * must be unique to this metric; keys never collide with those of
+     * {@link #aggregate}.
+     */
+    public DoubleSummaryStatistics summarize(String key, ToDoubleFunction<? super RecipeBatch.Row> metric) {
+        return scanAndReduce("summary:" + key, DoubleSummaryStatistics::new, (stats, row) -> {
+            double value = metric.applyAsDouble(row);
+            if (!Double.isNaN(value)) {
+                stats.accept(value);
+            }
+        }, (a, b) -> {
+            a.combine(b);
+            return a;
+        });
+    }
+
+    /** Drops every cached result, so the next call of each method queries again. */
+    public void invalidate() {
+        results.clear();
+    }
+
+    private <A> A scanAndReduce(String cacheKey, Supplier<A> supplier,
+            BiConsumer<A, ? super RecipeBatch.Row> accumulator, BinaryOperator<A> combiner) {
+        return cached(cacheKey, () -> {
+            Object lock = new Object();
+            List<A> merged = new ArrayList<>(Collections.singletonList(supplier.get()));
+            scan.forEachBatch(PartitionedRecipeScan.defaultPartitions(), SCAN_BATCH_SIZE, batch -> {
+                A partial = supplier.get();
+                batch.forEach(row -> accumulator.accept(partial, row));
+                synchronized (lock) {
+                    merged.set(0, combiner.apply(merged.get(0), partial));
+                }
+            });
+            return merged.get(0);
+        });
+    }
+
+    private Distribution distribution(String sql) throws SQLException {
+        List<Double> values = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        try (Connection conn = DbConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                values.add(rs.getDouble(1));
+                counts.add(rs.getLong(2));
+            }
+        }
+
+        double[] distinct = new double[values.size()];
+        long[] cumulative = new long[values.size()];
+        double sum = 0;
+        long total = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            distinct[i] = values.get(i);
+            total += counts.get(i);
+            cumulative[i] = total;
+            sum += distinct[i] * counts.get(i);
+        }
+        return new Distribution(distinct, cumulative, sum);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Callable<T> query) {
+        while (true) {
+            CachedResult entry = results.get(key);
+            if (entry == null || (entry.task.isDone() && entry.expiresAt - System.nanoTime() <= 0)) {
+                CachedResult fresh = new CachedResult(new FutureTask<>(query), System.nanoTime() + ttlNanos);
+                boolean claimed = entry == null ? results.putIfAbsent(key, fresh) == null
+                    : results.replace(key, entry, fresh);
+                if (!claimed) {
+                    continue;
+                }
+                fresh.task.run();
+                entry = fresh;
+            }
+
+            try {
+                return (T) entry.task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException("Interrupted while waiting for recipe statistics", e);
+            } catch (ExecutionException e) {
+                results.remove(key, entry);
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new DbException("Error computing recipe statistics (" + key + ")", cause);
+            }
+        }
+    }
+
+    /**
+     * A result and when it expires. The expiry is fixed before the entry is
+     * published, so the time-to-live runs from the start of the query.
+     */
+    private static final class CachedResult {
+        private final FutureTask<?> task;
+        private final long expiresAt;
+
+        private CachedResult(FutureTask<?> task, long expiresAt) {
+            this.task = task;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** A name and how many recipes it occurs in. */
+    public static final class Frequency {
+        private final String name;
+        private final long count;
+
+        Frequency(String name, long count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + count;
+        }
+    }
+
+    /**
+     * The distribution of one time column over the recipes that have a
+     * value. Percentiles are exact: they are read off the full set of
+     * distinct values and their counts.
+     */
+    public static final class Distribution {
+        private final double[] values;
+        private final long[] cumulativeCounts;
+        private final double sum;
+
+        Distribution(double[] values, long[] cumulativeCounts, double sum) {
+            this.values = values;
+            this.cumulativeCounts = cumulativeCounts;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return cumulativeCounts.length == 0 ? 0 : cumulativeCounts[cumulativeCounts.length - 1];
+        }
+
+        /** The smallest value, or NaN if no recipe has one. */
+        public double getMin() {
+            return values.length == 0 ? Double.NaN : values[0];
+        }
+
+        public double getMax() {
+            return values.length == 0 ? Double.NaN : values[values.length - 1];
+        }
+
+        public double getMean() {
+            return values.length == 0 ? Double.NaN : sum / getCount();
+        }
+
+        /** Returns the smallest value with at least {@code percentile}% of recipes at or below it. */
+        public double getPercentile(double percentile) {
+            if (values.length == 0) {
+                return Double.NaN;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * getCount()));
+            int index = Arrays.binarySearch(cumulativeCounts, rank);
+            return values[index >= 0 ? index : Math.min(-index - 1, values.length - 1)];
+        }
+
+        public double getMedian() {
+            return getPercentile(50);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d min=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f mean=%.1f", getCount(),
+                getMin(), getPercentile(50), getPercentile(90), getPercentile(99), getMax(), getMean());
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import recipes.entity.Recipe;
+import recipes.exception.DbException;
+
+/**
+ * Queue of pending recipe updates that are written to the database in the
+ * background.
+ *
+ * Updates are keyed by recipe ID, so a burst of edits to one recipe collapses
+ * into its latest state and costs a single row in the next flush. A flush
+ * runs when the queue reaches the flush threshold or the flush interval
+ * elapses, whichever comes first. The queue holds at most {@code capacity}
+ * recipes, counting those being flushed; once full, writers wait up to the
+ * offer timeout and then fail, so a database outage pushes back on callers
+ * instead of growing the heap.
+ *
+ * A flush keeps going until the queue is empty, and {@link #close()}
+ * flushes until nothing is left, so shutting down never loses an edit
+ * that could be written. When a batch fails, its recipes are written one at
+ * a time so one bad edit cannot hold back the others. A recipe that still
+ * fails is put back, unless a newer edit for it has arrived, and retried
+ * later in the same flush; after {@code maxAttempts} failures in a row it is
+ * dropped and logged as lost. The flush then reports every failure in one
+ * exception.
+ */
+public class RecipeWriteBehindQueue implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(RecipeWriteBehindQueue.class.getName());
+
+    private final Consumer<List<Recipe>> writer;
+    private final int capacity;
+    private final int flushThreshold;
+    private final long offerTimeoutMillis;
+    private final int maxAttempts;
+
+    // Guards the queue state and the statistics
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final LinkedHashMap<Integer, Recipe> pending = new LinkedHashMap<>();
+    // Recipes taken by the running flush; still visible to readers until committed
+    private final Map<Integer, Recipe> inFlight = new HashMap<>();
+    // Failed writes in a row of the queued state of a recipe
+    private final Map<Integer, Integer> failedAttempts = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    private long enqueuedCount;
+    private long coalescedCount;
+    private long flushCount;
+    private long flushedRecipes;
+    private long failedFlushes;
+    private long droppedRecipes;
+    private long totalFlushNanos;
+    private long maxFlushNanos;
+
+    /**
+     * @param writer writes one batch of recipes in a single transaction
+     * @param maxAttempts failed writes of a recipe before its edit is dropped
+     */
+    public RecipeWriteBehindQueue(Consumer<List<Recipe>> writer, int capacity, int flushThreshold,
+            long flushIntervalMillis, long offerTimeoutMillis, int maxAttempts) {
+        if (capacity < 1 || flushThreshold < 1 || flushThreshold > capacity || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid write-behind sizing: capacity=" + capacity
+                + ", flushThreshold=" + flushThreshold + ", maxAttempts=" + maxAttempts);
+        }
+        this.writer = writer;
+        this.capacity = capacity;
+        this.flushThreshold = flushThreshold;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxAttempts = maxAttempts;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recipes-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the latest state of a recipe, replacing any edit of the same
+     * recipe that has not been flushed yet.
+     */
+    public void enqueue(Recipe recipe) {
+        Recipe snapshot = new Recipe(recipe);
+        boolean triggerFlush;
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new DbException("Write-behind queue is closed");
+            }
+            if (pending.containsKey(snapshot.getId())) {
+                // Remove first so the recipe moves to the back of the flush order
+                pending.remove(snapshot.getId());
+                coalescedCount++;
+            } else {
+                awaitSpace();
+            }
+            // A new state starts with a clean record
+            failedAttempts.remove(snapshot.getId());
+            pending.put(snapshot.getId(), snapshot);
+            enqueuedCount++;
+            triggerFlush = pending.size() >= flushThreshold;
+        } finally {
+            lock.unlock();
+        }
+
+        if (triggerFlush) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /** Returns a copy of the queued state of a recipe, or {@code null} if it has none. */
+    public Recipe getPending(Integer recipeId) {
+        lock.lock();
+        try {
+            Recipe recipe = pending.get(recipeId);
+            if (recipe == null) {
+                recipe = inFlight.get(recipeId);
+            }
+            return recipe == null ? null : new Recipe(recipe);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops any queued edit of a recipe, e.g. because the recipe is being deleted. */
+    public void discard(Integer recipeId) {
+        lock.lock();
+        try {
+            failedAttempts.remove(recipeId);
+            boolean removed = inFlight.remove(recipeId) != null;
+            if (pending.remove(recipeId) != null || removed) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes everything queued and waits for it to finish. Failed batches do
+     * not stop the flush: it returns once every recipe is written or
+     * dropped, and then throws a {@link DbException} carrying the last
+     * failure of each dropped recipe, if any was dropped.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            DbException failure = null;
+            List<Recipe> batch;
+            while (!(batch = drain()).isEmpty()) {
+                for (RuntimeException e : writeBatch(batch)) {
+                    if (failure == null) {
+                        failure = new DbException("Write-behind flush dropped edits that kept failing", e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEnqueuedCount() {
+        lock.lock();
+        try {
+            return enqueuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCoalescedCount() {
+        lock.lock();
+        try {
+            return coalescedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFlushCount() {
+        lock.lock();
+        try {
+            return flushCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFlushedRecipeCount() {
+        lock.lock();
+        try {
+            return flushedRecipes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFailedFlushCount() {
+        lock.lock();
+        try {
+            return failedFlushes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Recipes whose edit was dropped after {@code maxAttempts} failed writes. */
+    public long getDroppedRecipeCount() {
+        lock.lock();
+        try {
+            return droppedRecipes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getAverageFlushMillis() {
+        lock.lock();
+        try {
+            return flushCount == 0 ? 0.0 : totalFlushNanos / (flushCount * 1_000_000.0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getMaxFlushMillis() {
+        lock.lock();
+        try {
+            return maxFlushNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops accepting edits, flushes what is queued and stops the flusher. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        RuntimeException failure = null;
+        do {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        } while (getQueueDepth() > 0);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void awaitSpace() {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        try {
+            // In-flight recipes keep their place, so a failed flush can always put them back
+            while (pending.size() + inFlight.size() >= capacity) {
+                if (closed) {
+                    throw new DbException("Write-behind queue is closed");
+                }
+                if (remainingNanos <= 0) {
+                    throw new DbException("Write-behind queue is full (" + capacity + " recipes)");
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while waiting for write-behind queue space", e);
+        }
+    }
+
+    private List<Recipe> drain() {
+        lock.lock();
+        try {
+            List<Recipe> batch = new ArrayList<>(Math.min(pending.size(), capacity));
+            Iterator<Map.Entry<Integer, Recipe>> it = pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < flushThreshold) {
+                Recipe recipe = it.next().getValue();
+                batch.add(recipe);
+                inFlight.put(recipe.getId(), recipe);
+                it.remove();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a batch. If it fails, each recipe is written on its own, and
+     * the ones that fail again are put back or dropped.
+     *
+     * @return the last failure of each recipe dropped
+     */
+    private List<RuntimeException> writeBatch(List<Recipe> batch) {
+        long start = System.nanoTime();
+        RuntimeException failure;
+        try {
+            writer.accept(batch);
+            written(batch, System.nanoTime() - start);
+            return Collections.emptyList();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        List<Recipe> failed = new ArrayList<>();
+        List<RuntimeException> causes = new ArrayList<>();
+        if (batch.size() > 1) {
+            for (Recipe recipe : batch) {
+                long recipeStart = System.nanoTime();
+                try {
+                    writer.accept(Collections.singletonList(recipe));
+                    written(Collections.singletonList(recipe), System.nanoTime() - recipeStart);
+                } catch (RuntimeException e) {
+                    failed.add(recipe);
+                    causes.add(e);
+                }
+            }
+        } else {
+            failed.addAll(batch);
+            causes.add(failure);
+        }
+        return failed.isEmpty() ? Collections.<RuntimeException>emptyList() : requeueOrDrop(failed, causes);
+    }
+
+    private void written(List<Recipe> recipes, long elapsedNanos) {
+        lock.lock();
+        try {
+            for (Recipe recipe : recipes) {
+                inFlight.remove(recipe.getId(), recipe);
+                failedAttempts.remove(recipe.getId());
+            }
+            notFull.signalAll();
+            flushCount++;
+            flushedRecipes += recipes.size();
+            totalFlushNanos += elapsedNanos;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsedNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts failed recipes back into the queue, where their in-flight slots
+     * keep them within capacity, or drops those that have failed
+     * {@code maxAttempts} times. A recipe edited or discarded since it was
+     * drained is left to its newer state.
+     *
+     * @return the failures of the recipes dropped
+     */
+    private List<RuntimeException> requeueOrDrop(List<Recipe> failed, List<RuntimeException> causes) {
+        List<RuntimeException> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            failedFlushes++;
+            for (int i = 0; i < failed.size(); i++) {
+                Recipe recipe = failed.get(i);
+                if (!inFlight.remove(recipe.getId(), recipe) || pending.containsKey(recipe.getId())) {
+                    continue;
+                }
+                int attempts = failedAttempts.merge(recipe.getId(), 1, Integer::sum);
+                if (attempts < maxAttempts) {
+                    pending.put(recipe.getId(), recipe);
+                } else {
+                    failedAttempts.remove(recipe.getId());
+                    droppedRecipes++;
+                    dropped.add(causes.get(i));
+                    LOG.log(Level.SEVERE, "Dropping the queued edit of recipe " + recipe.getId() + " after "
+                        + attempts + " failed writes", causes.get(i));
+                }
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return dropped;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Write-behind flush failed; edits that kept failing were dropped", e);
+        }
+    }
+}
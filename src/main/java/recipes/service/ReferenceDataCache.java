@@ -0,0 +1,310 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Category;
+import recipes.entity.Unit;
+import recipes.exception.DbException;
+
+/**
+ * In-memory copy of the {@code unit} and {@code category} tables.
+ *
+ * Both tables are read into an immutable {@link Snapshot}, loaded by
+ * {@link #preload()} or else by the first read. A refresh builds a complete
+ * new snapshot and swaps the reference, so readers never take a lock and
+ * never see a half-loaded table. Refreshes happen on {@link #refresh()}, on
+ * a timer started with {@link #startAutoRefresh(long)}, or on
+ * {@link #invalidate()}, which reloads before it returns.
+ *
+ * Once a snapshot is loaded, reads query the database only when the reload
+ * after an invalidation failed: they retry it and serve the previous
+ * snapshot if it fails again.
+ */
+public class ReferenceDataCache implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ReferenceDataCache.class.getName());
+    private static final String SELECT_UNITS_SQL =
+        "SELECT unit_id, unit_name_singular, unit_name_plural FROM unit ORDER BY unit_id";
+    private static final String SELECT_CATEGORIES_SQL =
+        "SELECT category_id, category_name FROM category ORDER BY category_id";
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    // Bumped by invalidate(); a snapshot loaded under an older generation is stale
+    private final AtomicLong generation = new AtomicLong();
+    private final Object loadLock = new Object();
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Loads both tables now, so the first reads do not have to. Call once the
+     * schema exists.
+     */
+    public Snapshot preload() {
+        return refresh();
+    }
+
+    /**
+     * Returns the current snapshot, loading it if there is none yet or the
+     * last one was invalidated. If that reload fails the previous snapshot is
+     * returned.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null && snapshot.generation == generation.get()) {
+            return snapshot;
+        }
+        synchronized (loadLock) {
+            snapshot = current.get();
+            if (snapshot != null && snapshot.generation == generation.get()) {
+                return snapshot;
+            }
+            try {
+                return reload();
+            } catch (RuntimeException e) {
+                if (snapshot == null) {
+                    throw e;
+                }
+                LOG.log(Level.WARNING, "Reference data reload failed; serving the previous snapshot", e);
+                return snapshot;
+            }
+        }
+    }
+
+    /** Reloads both tables and publishes them as the new snapshot. */
+    public Snapshot refresh() {
+        synchronized (loadLock) {
+            return reload();
+        }
+    }
+
+    /**
+     * Marks the current snapshot stale and reloads it. Readers keep the old
+     * snapshot until the new one is published. A refresh already loading
+     * when this is called does not publish what it read.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Reference data reload failed; the next read retries it", e);
+        }
+    }
+
+    /**
+     * Refreshes the snapshot every {@code periodMillis} on a daemon thread.
+     * A failed refresh keeps the previous snapshot.
+     */
+    public synchronized void startAutoRefresh(long periodMillis) {
+        if (refresher != null) {
+            throw new IllegalStateException("Auto refresh is already running");
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recipes-reference-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the auto-refresh timer, if running. */
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Reference data refresh failed", e);
+        }
+    }
+
+    // Caller holds loadLock. Loads again if invalidate() ran meanwhile, as the rows read may predate it.
+    private Snapshot reload() {
+        while (true) {
+            long loading = generation.get();
+            Snapshot snapshot = load(loading);
+            if (generation.get() == loading) {
+                current.set(snapshot);
+                return snapshot;
+            }
+        }
+    }
+
+    private Snapshot load(long loading) {
+        try (Connection conn = DbConnection.getReadConnection()) {
+            Snapshot.Builder builder = new Snapshot.Builder(loading);
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_UNITS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.addUnit(rs.getInt(1), rs.getString(2), rs.getString(3));
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_CATEGORIES_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.addCategory(rs.getInt(1), rs.getString(2));
+                }
+            }
+            return builder.build();
+
+        } catch (SQLException e) {
+            throw new DbException("Error loading units and categories", e);
+        }
+    }
+
+    /**
+     * Immutable units and categories. IDs are held in sorted {@code int[]}
+     * arrays searched by binary search, with names in parallel arrays, so
+     * lookups by ID neither box keys nor allocate.
+     */
+    public static final class Snapshot {
+        private final int[] unitIds;
+        private final String[] unitSingular;
+        private final String[] unitPlural;
+        private final int[] categoryIds;
+        private final String[] categoryNames;
+        private final Map<String, Integer> unitIdsByName;
+        private final long loadedAtMillis;
+        private final long generation;
+
+        private Snapshot(Builder builder) {
+            int units = builder.unitCount;
+            int categories = builder.categoryCount;
+            this.unitIds = Arrays.copyOf(builder.unitIds, units);
+            this.unitSingular = Arrays.copyOf(builder.unitSingular, units);
+            this.unitPlural = Arrays.copyOf(builder.unitPlural, units);
+            this.categoryIds = Arrays.copyOf(builder.categoryIds, categories);
+            this.categoryNames = Arrays.copyOf(builder.categoryNames, categories);
+
+            Map<String, Integer> byName = new HashMap<>(units * 4);
+            for (int i = 0; i < units; i++) {
+                byName.put(unitSingular[i].toLowerCase(Locale.ROOT), unitIds[i]);
+            }
+            for (int i = 0; i < units; i++) {
+                byName.putIfAbsent(unitPlural[i].toLowerCase(Locale.ROOT), unitIds[i]);
+            }
+            this.unitIdsByName = Collections.unmodifiableMap(byName);
+            this.loadedAtMillis = System.currentTimeMillis();
+            this.generation = builder.generation;
+        }
+
+        public String getUnitName(int unitId, boolean plural) {
+            int index = Arrays.binarySearch(unitIds, unitId);
+            return index < 0 ? null : plural ? unitPlural[index] : unitSingular[index];
+        }
+
+        /** Returns a new {@link Unit} for the ID, or {@code null} if unknown. */
+        public Unit getUnit(int unitId) {
+            int index = Arrays.binarySearch(unitIds, unitId);
+            return index < 0 ? null : new Unit(unitId, unitSingular[index], unitPlural[index]);
+        }
+
+        /** Looks up a unit by singular or plural name, ignoring case. */
+        public Unit findUnit(String name) {
+            Integer unitId = unitIdsByName.get(name.trim().toLowerCase(Locale.ROOT));
+            return unitId == null ? null : getUnit(unitId);
+        }
+
+        public String getCategoryName(int categoryId) {
+            int index = Arrays.binarySearch(categoryIds, categoryId);
+            return index < 0 ? null : categoryNames[index];
+        }
+
+        /** Returns a new {@link Category} for the ID, or {@code null} if unknown. */
+        public Category getCategory(int categoryId) {
+            String name = getCategoryName(categoryId);
+            return name == null ? null : new Category(categoryId, name);
+        }
+
+        /** Returns every category as new {@link Category} objects, in ID order. */
+        public List<Category> getCategories() {
+            List<Category> categories = new ArrayList<>(categoryIds.length);
+            for (int i = 0; i < categoryIds.length; i++) {
+                categories.add(new Category(categoryIds[i], categoryNames[i]));
+            }
+            return categories;
+        }
+
+        public int getUnitCount() {
+            return unitIds.length;
+        }
+
+        public int getCategoryCount() {
+            return categoryIds.length;
+        }
+
+        public long getLoadedAtMillis() {
+            return loadedAtMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "ReferenceData{units=" + unitIds.length + ", categories=" + categoryIds.length
+                + ", loadedAt=" + loadedAtMillis + "}";
+        }
+
+        // Rows arrive ordered by ID, which keeps the ID arrays sorted
+        private static final class Builder {
+            private final long generation;
+            private int[] unitIds = new int[16];
+            private String[] unitSingular = new String[16];
+            private String[] unitPlural = new String[16];
+            private int unitCount;
+            private int[] categoryIds = new int[16];
+            private String[] categoryNames = new String[16];
+            private int categoryCount;
+
+            Builder(long generation) {
+                this.generation = generation;
+            }
+
+            void addUnit(int unitId, String singular, String plural) {
+                if (unitCount == unitIds.length) {
+                    unitIds = Arrays.copyOf(unitIds, unitCount * 2);
+                    unitSingular = Arrays.copyOf(unitSingular, unitCount * 2);
+                    unitPlural = Arrays.copyOf(unitPlural, unitCount * 2);
+                }
+                unitIds[unitCount] = unitId;
+                unitSingular[unitCount] = singular;
+                unitPlural[unitCount] = plural;
+                unitCount++;
+            }
+
+            void addCategory(int categoryId, String name) {
+                if (categoryCount == categoryIds.length) {
+                    categoryIds = Arrays.copyOf(categoryIds, categoryCount * 2);
+                    categoryNames = Arrays.copyOf(categoryNames, categoryCount * 2);
+                }
+                categoryIds[categoryCount] = categoryId;
+                categoryNames[categoryCount] = name;
+                categoryCount++;
+            }
+
+            Snapshot build() {
+                return new Snapshot(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package recipes.service;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/**
+ * Brings the database schema up to the latest revision.
+ *
+ * Each revision is a SQL script on the classpath. Every applied revision is
+ * recorded in {@code schema_version}, and {@link #migrate()} runs the ones
+ * not recorded yet, in order. Scripts run through the {@link ScriptLoader},
+ * so a revision that fails part-way resumes where it stopped when migrate is
+ * run again.
+ *
+ * Revision 3 adds the MySQL FULLTEXT indexes behind
+ * {@link FullTextRecipeSearch}. It only runs when
+ * {@code recipes.db.fullTextIndexes} is set, and then only on MySQL. Until
+ * then it is skipped without being recorded, so turning the setting on
+ * later and migrating again applies it.
+ */
+public class SchemaMigrator {
+    private static final Logger LOG = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final String CREATE_VERSION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS schema_version ("
+        + "version INT NOT NULL, "
+        + "description VARCHAR(255) NOT NULL, "
+        + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+        + "PRIMARY KEY (version))";
+    private static final String SELECT_VERSIONS_SQL = "SELECT version FROM schema_version";
+    private static final String INSERT_VERSION_SQL = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+    private static final String DELETE_VERSIONS_SQL = "DELETE FROM schema_version";
+
+    private static final int FULL_TEXT_VERSION = 3;
+    private static final List<Revision> REVISIONS = Arrays.asList(
+        new Revision(1, "Recipe tables", "recipe_schema.sql", false),
+        new Revision(2, "Secondary and composite indexes, recipe_category key", "recipe_schema_v2.sql", false),
+        new Revision(FULL_TEXT_VERSION, "FULLTEXT indexes for recipe search", "recipe_schema_v3.sql", true),
+        new Revision(4, "prep_time and cook_time as DOUBLE minutes", "recipe_schema_v4.sql", false),
+        new Revision(5, "Optional ingredient unit, common units", "recipe_schema_v5.sql", false));
+
+    private final ScriptLoader scriptLoader;
+    private final boolean fullTextIndexes;
+
+    /** Adds the FULLTEXT indexes as {@code recipes.db.fullTextIndexes} says. */
+    public SchemaMigrator(ScriptLoader scriptLoader) {
+        this(scriptLoader, DbConnection.getConfig().isFullTextIndexes());
+    }
+
+    public SchemaMigrator(ScriptLoader scriptLoader, boolean fullTextIndexes) {
+        this.scriptLoader = scriptLoader;
+        this.fullTextIndexes = fullTextIndexes;
+    }
+
+    /**
+     * Applies every revision that is not recorded yet and returns the
+     * highest applied version.
+     *
+     * @throws DbException if FULLTEXT indexes are asked for on a database
+     *         other than MySQL
+     */
+    public int migrate() {
+        Set<Integer> applied = getAppliedVersions();
+        if (fullTextIndexes && !applied.contains(FULL_TEXT_VERSION) && !isMySql()) {
+            throw new DbException("FULLTEXT indexes need MySQL; set recipes.db.fullTextIndexes=false");
+        }
+        int current = 0;
+        for (Revision revision : REVISIONS) {
+            if (!applied.contains(revision.version)) {
+                if (revision.fullText && !fullTextIndexes) {
+                    LOG.fine("Skipping schema revision " + revision.version + ": recipes.db.fullTextIndexes is off");
+                    continue;
+                }
+                apply(revision);
+            }
+            current = revision.version;
+        }
+        return current;
+    }
+
+    /**
+     * Drops and recreates every table from revision 1, then migrates to the
+     * latest revision.
+     */
+    public int recreate() {
+        try (Connection conn = DbConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE_SQL);
+            stmt.executeUpdate(DELETE_VERSIONS_SQL);
+        } catch (SQLException e) {
+            throw new DbException("Error resetting schema_version", e);
+        }
+        return migrate();
+    }
+
+    /** The highest applied revision, or 0 for an empty database. */
+    public int getCurrentVersion() {
+        int current = 0;
+        for (int version : getAppliedVersions()) {
+            current = Math.max(current, version);
+        }
+        return current;
+    }
+
+    public Set<Integer> getAppliedVersions() {
+        try (Connection conn = DbConnection.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_VERSION_TABLE_SQL);
+            }
+            Set<Integer> versions = new HashSet<>();
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_VERSIONS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    versions.add(rs.getInt(1));
+                }
+            }
+            return versions;
+        } catch (SQLException e) {
+            throw new DbException("Error reading schema_version", e);
+        }
+    }
+
+    public static int getLatestVersion() {
+        return REVISIONS.get(REVISIONS.size() - 1).version;
+    }
+
+    private static boolean isMySql() {
+        try (Connection conn = DbConnection.getConnection()) {
+            return conn.getMetaData().getDatabaseProductName().equalsIgnoreCase("MySQL");
+        } catch (SQLException e) {
+            throw new DbException("Error reading the database product name", e);
+        }
+    }
+
+    private void apply(Revision revision) {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(revision.script);
+        if (in == null) {
+            throw new DbException("Could not find " + revision.script + " on the classpath");
+        }
+        try (SqlScriptParser statements = new SqlScriptParser(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            scriptLoader.load(revision.script, statements);
+        }
+
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_VERSION_SQL)) {
+            stmt.setInt(1, revision.version);
+            stmt.setString(2, revision.description);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error recording schema version " + revision.version, e);
+        }
+    }
+
+    private static final class Revision {
+        private final int version;
+        private final String description;
+        private final String script;
+        // Only applied when FULLTEXT indexes are turned on
+        private final boolean fullText;
+
+        private Revision(int version, String description, String script, boolean fullText) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.fullText = fullText;
+        }
+    }
+}
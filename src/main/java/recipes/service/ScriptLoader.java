@@ -0,0 +1,213 @@
+package recipes.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/**
+ * Executes large SQL scripts in bounded chunks.
+ *
+ * Data statements are sent in JDBC batches of {@code batchSize} and committed
+ * every {@code commitEvery} statements, so neither the client-side batch nor
+ * the server's undo log grows with the script. Schema statements (CREATE,
+ * DROP, ALTER, ...) commit implicitly in MySQL, so they run on their own
+ * outside the batches.
+ *
+ * The number of statements committed so far is stored in the
+ * {@code script_checkpoint} table in the same transaction as the data it
+ * covers. If a load fails, running the same script again skips everything
+ * that was already committed and carries on from the failed chunk. The
+ * checkpoint is removed once the script completes.
+ */
+public class ScriptLoader {
+    private static final Logger LOG = Logger.getLogger(ScriptLoader.class.getName());
+    private static final String CREATE_CHECKPOINT_TABLE_SQL = "CREATE TABLE IF NOT EXISTS script_checkpoint ("
+        + "script_name VARCHAR(255) NOT NULL, "
+        + "statements_committed BIGINT NOT NULL, "
+        + "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+        + "PRIMARY KEY (script_name))";
+    private static final String SELECT_CHECKPOINT_SQL =
+        "SELECT statements_committed FROM script_checkpoint WHERE script_name = ?";
+    private static final String UPSERT_CHECKPOINT_SQL =
+        "INSERT INTO script_checkpoint (script_name, statements_committed) VALUES (?, ?) "
+        + "ON DUPLICATE KEY UPDATE statements_committed = VALUES(statements_committed)";
+    private static final String DELETE_CHECKPOINT_SQL = "DELETE FROM script_checkpoint WHERE script_name = ?";
+
+    /** Receives progress after every commit. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(String scriptName, long statementsCommitted, long statementsSkipped, long elapsedMillis);
+    }
+
+    private final int batchSize;
+    private final int commitEvery;
+    private final ProgressListener listener;
+
+    public ScriptLoader(int batchSize, int commitEvery, ProgressListener listener) {
+        if (batchSize < 1 || commitEvery < batchSize) {
+            throw new IllegalArgumentException(
+                "Invalid chunking: batchSize=" + batchSize + ", commitEvery=" + commitEvery);
+        }
+        this.batchSize = batchSize;
+        this.commitEvery = commitEvery;
+        this.listener = listener;
+    }
+
+    /**
+     * Logs progress at FINE as statements committed and statements per
+     * second. Schema statements commit one at a time, so a schema script
+     * reports after every statement.
+     */
+    public static ProgressListener loggingProgress() {
+        return (scriptName, committed, skipped, elapsedMillis) -> {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine(String.format("%s: %,d statements committed (%,.0f statements/s)", scriptName, committed,
+                    statementsPerSecond(committed - skipped, elapsedMillis)));
+            }
+        };
+    }
+
+    /** Returns the statements run per second, for progress reports. */
+    public static double statementsPerSecond(long executed, long elapsedMillis) {
+        return elapsedMillis == 0 ? 0.0 : executed * 1000.0 / elapsedMillis;
+    }
+
+    /** Returns a loader with the same chunking that reports to {@code listener}. */
+    public ScriptLoader withListener(ProgressListener listener) {
+        return new ScriptLoader(batchSize, commitEvery, listener);
+    }
+
+    /**
+     * Runs the statements, resuming after the last committed chunk of an
+     * earlier failed run of the same script.
+     */
+    public void load(String scriptName, Iterator<String> statements) {
+        long start = System.currentTimeMillis();
+
+        try (Connection conn = DbConnection.getConnection();
+             Statement batch = conn.createStatement()) {
+            long skipped = prepareCheckpoint(conn, scriptName);
+            long position = 0;
+            long committed = skipped;
+            int batched = 0;
+            int uncommitted = 0;
+
+            conn.setAutoCommit(false);
+            try {
+                while (statements.hasNext()) {
+                    String sql = statements.next();
+                    if (position++ < skipped) {
+                        continue;
+                    }
+
+                    if (isSchemaStatement(sql)) {
+                        if (uncommitted > 0) {
+                            executeBatch(batch, batched);
+                            committed += uncommitted;
+                            commit(conn, scriptName, committed);
+                            batched = uncommitted = 0;
+                        }
+                        try (Statement ddl = conn.createStatement()) {
+                            ddl.execute(sql);
+                        }
+                        committed++;
+                        commit(conn, scriptName, committed);
+                        report(scriptName, committed, skipped, start);
+                        continue;
+                    }
+
+                    batch.addBatch(sql);
+                    batched++;
+                    uncommitted++;
+                    if (batched == batchSize) {
+                        executeBatch(batch, batched);
+                        batched = 0;
+                    }
+                    if (uncommitted >= commitEvery) {
+                        executeBatch(batch, batched);
+                        committed += uncommitted;
+                        commit(conn, scriptName, committed);
+                        report(scriptName, committed, skipped, start);
+                        batched = uncommitted = 0;
+                    }
+                }
+
+                executeBatch(batch, batched);
+                committed += uncommitted;
+                try (PreparedStatement stmt = conn.prepareStatement(DELETE_CHECKPOINT_SQL)) {
+                    stmt.setString(1, scriptName);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                report(scriptName, committed, skipped, start);
+
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw new DbException("Error loading " + scriptName + " after " + committed
+                    + " committed statements; run it again to resume", e);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading " + scriptName, e);
+        }
+    }
+
+    private long prepareCheckpoint(Connection conn, String scriptName) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_CHECKPOINT_TABLE_SQL);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_CHECKPOINT_SQL)) {
+            stmt.setString(1, scriptName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void executeBatch(Statement batch, int batched) throws SQLException {
+        if (batched > 0) {
+            batch.executeBatch();
+            batch.clearBatch();
+        }
+    }
+
+    private void commit(Connection conn, String scriptName, long committed) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_CHECKPOINT_SQL)) {
+            stmt.setString(1, scriptName);
+            stmt.setLong(2, committed);
+            stmt.executeUpdate();
+        }
+        conn.commit();
+    }
+
+    private void report(String scriptName, long committed, long skipped, long start) {
+        if (listener != null) {
+            listener.onProgress(scriptName, committed, skipped, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static boolean isSchemaStatement(String sql) {
+        int end = 0;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        switch (sql.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "CREATE":
+            case "DROP":
+            case "ALTER":
+            case "TRUNCATE":
+            case "RENAME":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
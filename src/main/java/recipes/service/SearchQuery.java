@@ -0,0 +1,72 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed search query: the words to match and, for each, whether it is a
+ * prefix. Also holds the tokenizer, so documents and queries are split the
+ * same way.
+ */
+final class SearchQuery {
+    private final List<String> terms;
+    private final List<Boolean> prefixes;
+
+    private SearchQuery(List<String> terms, List<Boolean> prefixes) {
+        this.terms = terms;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * Splits {@code query} into terms. A trailing {@code *} on a
+     * whitespace-separated word makes the last term of that word a prefix.
+     */
+    static SearchQuery parse(String query) {
+        List<String> terms = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        if (query != null) {
+            for (String word : query.trim().split("\\s+")) {
+                int before = terms.size();
+                tokenize(word, terms);
+                for (int i = before; i < terms.size(); i++) {
+                    prefixes.add(i == terms.size() - 1 && word.endsWith("*"));
+                }
+            }
+        }
+        return new SearchQuery(terms, prefixes);
+    }
+
+    /** Adds the lower-case letter-and-digit runs of {@code text} to {@code into}. */
+    static void tokenize(String text, List<String> into) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                into.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    String term(int index) {
+        return terms.get(index);
+    }
+
+    boolean isPrefix(int index) {
+        return prefixes.get(index);
+    }
+}
@@ -0,0 +1,265 @@
+package recipes.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import recipes.exception.DbException;
+
+/**
+ * Splits a SQL script into statements in a single pass over a {@link Reader}.
+ *
+ * Statements are produced one at a time as the iterator is advanced, so only
+ * the statement being built is held in memory and scripts of any size can be
+ * loaded. The parser understands the parts of MySQL script syntax that matter
+ * for splitting:
+ * <ul>
+ * <li>'single', "double" and `backtick` quoting, with backslash escapes and
+ * doubled quotes, so delimiters and comment markers inside literals are kept</li>
+ * <li>{@code -- } and {@code #} line comments and block comments, which are
+ * dropped; {@code /*!...*&#47;} version comments are kept because MySQL
+ * executes them</li>
+ * <li>{@code DELIMITER} lines, which change the statement terminator</li>
+ * </ul>
+ * Runs of whitespace outside literals collapse to a single space and
+ * statements are trimmed; empty statements are skipped.
+ */
+public class SqlScriptParser implements Iterator<String>, AutoCloseable {
+    private static final String DEFAULT_DELIMITER = ";";
+    private static final String DELIMITER_COMMAND = "DELIMITER ";
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int pushedBack = EOF;
+
+    private final StringBuilder statement = new StringBuilder(256);
+    private String delimiter = DEFAULT_DELIMITER;
+    private String next;
+    private boolean finished;
+
+    public SqlScriptParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = parseNext();
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new DbException(e);
+        }
+    }
+
+    private String parseNext() {
+        statement.setLength(0);
+        int c;
+
+        while ((c = read()) != EOF) {
+            char ch = (char) c;
+
+            if (ch == '\'' || ch == '"' || ch == '`') {
+                appendQuoted(ch);
+            } else if (ch == '-' && peek() == '-' && isCommentDashFollower(peekSecond())) {
+                skipLine();
+                appendSpace();
+            } else if (ch == '#') {
+                skipLine();
+                appendSpace();
+            } else if (ch == '/' && peek() == '*') {
+                read();
+                if (peek() == '!') {
+                    statement.append("/*");
+                    appendBlockComment();
+                } else {
+                    skipBlockComment();
+                    appendSpace();
+                }
+            } else if (Character.isWhitespace(ch)) {
+                appendSpace();
+                if (isDelimiterCommand()) {
+                    delimiter = readDelimiter();
+                    statement.setLength(0);
+                }
+            } else {
+                statement.append(ch);
+                if (endsWithDelimiter()) {
+                    statement.setLength(statement.length() - delimiter.length());
+                    String sql = statement.toString().trim();
+                    if (!sql.isEmpty()) {
+                        return sql;
+                    }
+                    statement.setLength(0);
+                }
+            }
+        }
+
+        String sql = statement.toString().trim();
+        return sql.isEmpty() ? null : sql;
+    }
+
+    private void appendQuoted(char quote) {
+        statement.append(quote);
+        int c;
+        while ((c = read()) != EOF) {
+            char ch = (char) c;
+            statement.append(ch);
+            if (ch == '\\' && quote != '`') {
+                int escaped = read();
+                if (escaped == EOF) {
+                    break;
+                }
+                statement.append((char) escaped);
+            } else if (ch == quote) {
+                if (peek() == quote) {
+                    statement.append((char) read());
+                } else {
+                    return;
+                }
+            }
+        }
+        throw new DbException("Unterminated " + quote + " literal in SQL script");
+    }
+
+    private void appendBlockComment() {
+        int c;
+        while ((c = read()) != EOF) {
+            statement.append((char) c);
+            if (c == '*' && peek() == '/') {
+                statement.append((char) read());
+                return;
+            }
+        }
+        throw new DbException("Unterminated comment in SQL script");
+    }
+
+    private void skipBlockComment() {
+        int c;
+        while ((c = read()) != EOF) {
+            if (c == '*' && peek() == '/') {
+                read();
+                return;
+            }
+        }
+        throw new DbException("Unterminated comment in SQL script");
+    }
+
+    private void skipLine() {
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            // discard
+        }
+    }
+
+    private void appendSpace() {
+        int length = statement.length();
+        if (length > 0 && statement.charAt(length - 1) != ' ') {
+            statement.append(' ');
+        }
+    }
+
+    private boolean isDelimiterCommand() {
+        return statement.length() == DELIMITER_COMMAND.length()
+            && statement.toString().equalsIgnoreCase(DELIMITER_COMMAND);
+    }
+
+    private String readDelimiter() {
+        StringBuilder value = new StringBuilder();
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            value.append((char) c);
+        }
+        String newDelimiter = value.toString().trim();
+        if (newDelimiter.isEmpty()) {
+            throw new DbException("DELIMITER without a value in SQL script");
+        }
+        return newDelimiter;
+    }
+
+    private boolean endsWithDelimiter() {
+        int length = statement.length();
+        int delimiterLength = delimiter.length();
+        if (length < delimiterLength) {
+            return false;
+        }
+        for (int i = 0; i < delimiterLength; i++) {
+            if (statement.charAt(length - delimiterLength + i) != delimiter.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // MySQL only treats "--" as a comment when it is followed by whitespace or the end of input
+    private static boolean isCommentDashFollower(int c) {
+        return c == EOF || Character.isWhitespace(c);
+    }
+
+    private int read() {
+        if (pushedBack != EOF) {
+            int c = pushedBack;
+            pushedBack = EOF;
+            return c;
+        }
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() {
+        if (pushedBack != EOF) {
+            return pushedBack;
+        }
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position];
+    }
+
+    private int peekSecond() {
+        int first = read();
+        int second = peek();
+        pushedBack = first;
+        return second;
+    }
+
+    private boolean fill() {
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read == EOF) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new DbException("Error reading SQL script", e);
+        }
+    }
+}
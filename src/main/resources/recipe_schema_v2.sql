@@ -0,0 +1,25 @@
+-- Revision 2: secondary indexes for the queries RecipeService issues.
+-- Applied on top of recipe_schema.sql by SchemaMigrator.
+
+-- Lookups by name; InnoDB appends the primary key, so this also covers name -> id
+CREATE INDEX idx_recipe_name ON recipe (recipe_name);
+
+-- Range queries on creation time
+CREATE INDEX idx_recipe_created_at ON recipe (created_at);
+
+-- Children are read per recipe in display order. These indexes also serve the
+-- recipe_id foreign keys, so MySQL drops the implicit single-column ones.
+CREATE INDEX idx_ingredient_recipe_order ON ingredient (recipe_id, ingredient_order, ingredient_id);
+CREATE INDEX idx_step_recipe_order ON step (recipe_id, step_order, step_id);
+
+-- recipe_category had no key, so duplicate pairs were possible and every lookup
+-- scanned the table. Remove duplicates, then key the table on the pair, with a
+-- reverse index for category -> recipes. A regular work table (not TEMPORARY)
+-- keeps a resumed load safe.
+DROP TABLE IF EXISTS recipe_category_distinct;
+CREATE TABLE recipe_category_distinct AS SELECT DISTINCT recipe_id, category_id FROM recipe_category;
+DELETE FROM recipe_category;
+INSERT INTO recipe_category (recipe_id, category_id) SELECT recipe_id, category_id FROM recipe_category_distinct;
+DROP TABLE recipe_category_distinct;
+ALTER TABLE recipe_category ADD PRIMARY KEY (recipe_id, category_id);
+CREATE INDEX idx_recipe_category_category ON recipe_category (category_id, recipe_id);
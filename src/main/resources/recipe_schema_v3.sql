@@ -0,0 +1,5 @@
+-- Revision 3: FULLTEXT indexes backing FullTextRecipeSearch.
+-- Kept apart from revision 2 because FULLTEXT is MySQL-specific: SchemaMigrator
+-- only applies it when recipes.db.fullTextIndexes is set.
+CREATE FULLTEXT INDEX ft_recipe_text ON recipe (recipe_name, notes);
+CREATE FULLTEXT INDEX ft_ingredient_name ON ingredient (ingredient_name);
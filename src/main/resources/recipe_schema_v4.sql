@@ -0,0 +1,14 @@
+-- Revision 4: prep_time and cook_time hold minutes as DOUBLE instead of TIME.
+-- The application always bound them as numbers of minutes, which MySQL stored
+-- as HHMMSS (15.0 became 00:00:15) and Connector/J cannot read back as a
+-- Double. The HHMMSS digits are the number that was written, so they are
+-- copied into new DOUBLE columns that then take the old names.
+ALTER TABLE recipe ADD COLUMN prep_minutes DOUBLE;
+ALTER TABLE recipe ADD COLUMN cook_minutes DOUBLE;
+UPDATE recipe SET
+  prep_minutes = HOUR(prep_time) * 10000 + MINUTE(prep_time) * 100 + SECOND(prep_time),
+  cook_minutes = HOUR(cook_time) * 10000 + MINUTE(cook_time) * 100 + SECOND(cook_time);
+ALTER TABLE recipe DROP COLUMN prep_time;
+ALTER TABLE recipe DROP COLUMN cook_time;
+ALTER TABLE recipe CHANGE COLUMN prep_minutes prep_time DOUBLE;
+ALTER TABLE recipe CHANGE COLUMN cook_minutes cook_time DOUBLE;
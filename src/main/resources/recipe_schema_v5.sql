@@ -0,0 +1,25 @@
+-- Revision 5: an ingredient's unit is optional, and the common units exist.
+-- Countable ingredients ("2 eggs") have no unit, and the application binds
+-- NULL for them, which the NOT NULL column rejected. The unit table was never
+-- seeded, so no unit name could be resolved either; units already present
+-- are kept and only missing names are added.
+ALTER TABLE ingredient MODIFY COLUMN unit_id INT NULL;
+INSERT INTO unit (unit_name_singular, unit_name_plural)
+SELECT s.singular, s.plural FROM (
+  SELECT 'teaspoon' AS singular, 'teaspoons' AS plural
+  UNION ALL SELECT 'tablespoon', 'tablespoons'
+  UNION ALL SELECT 'cup', 'cups'
+  UNION ALL SELECT 'fluid ounce', 'fluid ounces'
+  UNION ALL SELECT 'pint', 'pints'
+  UNION ALL SELECT 'quart', 'quarts'
+  UNION ALL SELECT 'ounce', 'ounces'
+  UNION ALL SELECT 'pound', 'pounds'
+  UNION ALL SELECT 'gram', 'grams'
+  UNION ALL SELECT 'kilogram', 'kilograms'
+  UNION ALL SELECT 'milliliter', 'milliliters'
+  UNION ALL SELECT 'liter', 'liters'
+  UNION ALL SELECT 'pinch', 'pinches'
+  UNION ALL SELECT 'clove', 'cloves'
+  UNION ALL SELECT 'can', 'cans'
+) s
+WHERE NOT EXISTS (SELECT 1 FROM unit u WHERE u.unit_name_singular = s.singular);
@@ -0,0 +1,112 @@
+package recipes.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import recipes.exception.DbException;
+
+/** Pools plain H2 connections, keeping each one the factory opened. */
+class ConnectionPoolTest {
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1";
+
+    private final List<Connection> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void borrowTimesOutWhileEveryConnectionIsOut() throws SQLException {
+        pool = newPool(0, 1, 0);
+        Connection first = pool.borrow();
+
+        long start = System.nanoTime();
+        assertThrows(DbException.class, pool::borrow);
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+
+        first.close();
+        try (Connection second = pool.borrow()) {
+            assertEquals(1, pool.getActiveConnections());
+        }
+        assertEquals(1, opened.size());
+    }
+
+    @Test
+    void idleConnectionsAboveTheMinimumAreEvicted() throws Exception {
+        pool = newPool(1, 3, 0);
+        Connection a = pool.borrow();
+        Connection b = pool.borrow();
+        Connection c = pool.borrow();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.getIdleConnections());
+
+        Thread.sleep(5);
+        pool.housekeep();
+        assertEquals(1, pool.getTotalConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(2, opened.stream().filter(ConnectionPoolTest::isClosed).count());
+    }
+
+    @Test
+    void aConnectionThatDiedWhileIdleIsReplacedOnBorrow() throws SQLException {
+        pool = newPool(0, 1, 60_000);
+        pool.borrow().close();
+        opened.get(0).close();
+
+        try (Connection conn = pool.borrow()) {
+            assertTrue(conn.isValid(1));
+        }
+        assertEquals(2, opened.size());
+        assertEquals(1, pool.getTotalConnections());
+    }
+
+    @Test
+    void sessionStateIsRestoredForTheNextBorrower() throws SQLException {
+        pool = newPool(0, 1, 60_000);
+        int isolation;
+        try (Connection conn = pool.borrow()) {
+            isolation = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        }
+
+        try (Connection conn = pool.borrow()) {
+            assertTrue(conn.getAutoCommit());
+            assertFalse(conn.isReadOnly());
+            assertEquals(isolation, conn.getTransactionIsolation());
+        }
+        assertEquals(1, opened.size());
+    }
+
+    private ConnectionPool newPool(int minSize, int maxSize, long idleTimeoutMillis) {
+        return new ConnectionPool(() -> {
+            Connection conn = DriverManager.getConnection(URL);
+            opened.add(conn);
+            return conn;
+        }, minSize, maxSize, 50, idleTimeoutMillis, 0, 1, 0);
+    }
+
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package recipes.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+import recipes.exception.DbException;
+
+class DbConfigTest {
+
+    @Test
+    void defaultsAreValidWithReplicas() {
+        DbConfig config = DbConfig.fromProperties(replicated());
+        assertEquals(1, config.getReplicaUrls().size());
+        assertTrue(config.getReadYourWritesMillis() >= ReplicaRouter.minStickyMillis(
+            config.getMaxReplicaLagSeconds(), config.getReplicaCheckMillis()));
+    }
+
+    @Test
+    void rejectsAReadYourWritesWindowShorterThanTheReplicaLag() {
+        Properties properties = replicated();
+        properties.setProperty("recipes.db.readYourWritesMillis", "2000");
+        properties.setProperty("recipes.db.maxReplicaLagSeconds", "10");
+
+        DbException e = assertThrows(DbException.class, () -> DbConfig.fromProperties(properties));
+        assertTrue(e.getMessage().contains("readYourWritesMillis"), e.getMessage());
+    }
+
+    @Test
+    void allowsAnyWindowWithoutReplicas() {
+        Properties properties = new Properties();
+        properties.setProperty("recipes.db.readYourWritesMillis", "0");
+        assertEquals(0, DbConfig.fromProperties(properties).getReadYourWritesMillis());
+    }
+
+    @Test
+    void neverAllowsLocalInfileOnPooledConnections() {
+        assertFalse(DbConfig.fromProperties(new Properties()).connectionProperties("jdbc:mysql://db/recipes")
+            .containsKey("allowLoadLocalInfile"));
+
+        Properties properties = new Properties();
+        properties.setProperty("recipes.db.driver.allowLoadLocalInfile", "true");
+        DbException e = assertThrows(DbException.class, () -> DbConfig.fromProperties(properties));
+        assertTrue(e.getMessage().contains("allowLoadLocalInfile"), e.getMessage());
+    }
+
+    private static Properties replicated() {
+        Properties properties = new Properties();
+        properties.setProperty("recipes.db.replicaUrls", "jdbc:mysql://replica:3306/recipes");
+        return properties;
+    }
+}
@@ -0,0 +1,65 @@
+package recipes.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void anEmptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99));
+        assertEquals(0.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void zeroAndNegativeValuesLandInTheFirstBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(100));
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    void valuesBelowSixteenAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 0; nanos < 16; nanos++) {
+            histogram.record(nanos);
+        }
+
+        assertEquals(0, histogram.getPercentileNanos(0));
+        assertEquals(7, histogram.getPercentileNanos(50));
+        assertEquals(14, histogram.getPercentileNanos(90));
+        assertEquals(15, histogram.getPercentileNanos(100));
+        assertEquals(7.5, histogram.getMeanNanos());
+    }
+
+    @Test
+    void largerValuesAreWithinOneSixteenth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        histogram.record(2_000_000);
+
+        long median = histogram.getPercentileNanos(50);
+        assertTrue(median >= 1_000 && median <= 1_000 + 1_000 / 16, String.valueOf(median));
+        // The top bucket's upper bound is capped at the largest value seen
+        assertEquals(2_000_000, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void recordsTheLargestLong() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(1, histogram.getPercentileNanos(50));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(100));
+        assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+    }
+}
@@ -0,0 +1,46 @@
+package recipes.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryMetricsTest {
+
+    @BeforeEach
+    @AfterEach
+    void reset() {
+        QueryMetrics.reset();
+    }
+
+    @Test
+    void statementsBeyondTheCapShareOneEntry() {
+        OperationStats first = QueryMetrics.statsFor("SELECT 0");
+        for (int i = 1; i < 1_000; i++) {
+            QueryMetrics.statsFor("SELECT " + i);
+        }
+
+        OperationStats overflow = QueryMetrics.statsFor("SELECT 1000");
+        assertEquals("(other)", overflow.getSql());
+        assertSame(overflow, QueryMetrics.statsFor("SELECT 1001"));
+        // Statements tracked before the cap keep their own entries
+        assertSame(first, QueryMetrics.statsFor("SELECT 0"));
+        assertEquals(1_001, QueryMetrics.getOperations().size());
+    }
+
+    @Test
+    void executionsCountTowardTheirStatementAndTheOverallLatency() {
+        OperationStats stats = QueryMetrics.statsFor("UPDATE recipe SET notes = ?");
+        QueryMetrics.recordExecution(stats, 1_000, 3, false, Collections.emptyList());
+        QueryMetrics.recordExecution(stats, 2_000, 0, true, Collections.emptyList());
+
+        assertEquals(2, stats.getLatency().getCount());
+        assertEquals(3, stats.getRowsWritten());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(2, QueryMetrics.getLatency().getCount());
+    }
+}
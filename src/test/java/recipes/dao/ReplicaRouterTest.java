@@ -0,0 +1,157 @@
+package recipes.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Routes between two local databases, a primary and a replica, each with a
+ * {@code node} table naming it, so every test can see which one served a
+ * read. H2 cannot report replication status, so the lag check is switched
+ * off except where a test covers it.
+ */
+class ReplicaRouterTest {
+    private static final String PRIMARY_URL = "jdbc:h2:mem:router_primary;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:router_replica;DB_CLOSE_DELAY=-1";
+    private static final long MAX_LAG_SECONDS = 0;
+    private static final long CHECK_PERIOD_MILLIS = 50;
+    private static final long STICKY_MILLIS = 300;
+
+    private final AtomicBoolean replicaReachable = new AtomicBoolean(true);
+    private ConnectionPool primary;
+    private ConnectionPool replica;
+    private ReplicaRouter router;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        createNode(PRIMARY_URL, "primary");
+        createNode(REPLICA_URL, "replica");
+        primary = pool(() -> DriverManager.getConnection(PRIMARY_URL));
+        replica = pool(() -> {
+            if (!replicaReachable.get()) {
+                throw new SQLException("Connection refused");
+            }
+            return DriverManager.getConnection(REPLICA_URL);
+        });
+        router = new ReplicaRouter(primary, Collections.singletonList(replica), Collections.singletonList("replica"),
+            STICKY_MILLIS, MAX_LAG_SECONDS, CHECK_PERIOD_MILLIS, 1, false);
+        awaitHealthyReplicas(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.close();
+        primary.close();
+    }
+
+    @Test
+    void readsGoToAHealthyReplica() throws SQLException {
+        assertEquals("replica", readNode());
+    }
+
+    @Test
+    void readsStayOnThePrimaryWhileAWriteIsOpen() throws SQLException {
+        try (Connection write = router.getWriteConnection()) {
+            assertEquals("primary", node(write));
+            assertEquals("primary", readNode());
+        }
+    }
+
+    @Test
+    void readsStayOnThePrimaryForTheWindowAfterAWrite() throws Exception {
+        router.getWriteConnection().close();
+        assertEquals("primary", readNode());
+
+        Thread.sleep(STICKY_MILLIS + 100);
+        assertEquals("replica", readNode());
+    }
+
+    @Test
+    void anUnreachableReplicaIsTakenOutOfRotation() throws SQLException {
+        replicaReachable.set(false);
+        try (Connection conn = DriverManager.getConnection(REPLICA_URL);
+             Statement stmt = conn.createStatement()) {
+            // Drops the database, so the replica pool's idle connections fail validation
+            stmt.execute("SHUTDOWN");
+        }
+
+        assertEquals("primary", readNode());
+        assertEquals(0, router.getHealthyReplicaCount());
+    }
+
+    @Test
+    void rejectsAWindowShorterThanTheLagAReplicaCanHave() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplicaRouter(primary,
+            Arrays.asList(replica), Arrays.asList("replica"), 2_000, 10, 5_000, 1, true));
+    }
+
+    @Test
+    void aReplicaWhoseLagCannotBeReadStaysOutOfRotation() throws Exception {
+        ReplicaRouter strict = new ReplicaRouter(primary,
+            Collections.singletonList(pool(() -> DriverManager.getConnection(REPLICA_URL))),
+            Collections.singletonList("replica"), STICKY_MILLIS, MAX_LAG_SECONDS, CHECK_PERIOD_MILLIS, 1, true);
+        try {
+            Thread.sleep(CHECK_PERIOD_MILLIS * 4);
+            assertEquals(0, strict.getHealthyReplicaCount());
+            try (Connection conn = strict.getReadConnection()) {
+                assertEquals("primary", node(conn));
+            }
+        } finally {
+            strict.close();
+        }
+    }
+
+    private String readNode() throws SQLException {
+        try (Connection conn = router.getReadConnection()) {
+            return node(conn);
+        }
+    }
+
+    private static String node(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static void createNode(String url, String name) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS node");
+            stmt.execute("CREATE TABLE node (name VARCHAR(20))");
+            stmt.execute("INSERT INTO node VALUES ('" + name + "')");
+        }
+    }
+
+    private static ConnectionPool pool(ConnectionPool.ConnectionFactory factory) {
+        return new ConnectionPool(factory, 0, 4, 1_000, 60_000, 0, 1, 8);
+    }
+
+    private void awaitHealthyReplicas(int count) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (router.getHealthyReplicaCount() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Replica never came into rotation: " + router.getReplicaStatus());
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
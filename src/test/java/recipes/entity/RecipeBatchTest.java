@@ -0,0 +1,107 @@
+package recipes.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class RecipeBatchTest {
+
+    @Test
+    void keepsEachColumnsNullsApartAcrossBitmapWords() {
+        // Starts at one row, so every array grows several times
+        RecipeBatch batch = new RecipeBatch(1);
+        for (int i = 0; i < 200; i++) {
+            batch.add(i, "Recipe " + i, i % 2 == 0 ? null : i, i % 3 == 0 ? null : i + 0.5,
+                i % 5 == 0 ? null : i + 0.25, i % 7 == 0 ? null : "Notes " + i);
+        }
+
+        assertEquals(200, batch.size());
+        RecipeBatch.Row row = batch.row(0);
+        for (int i = 0; i < 200; i++) {
+            row.moveTo(i);
+            assertEquals(i, row.getId());
+            assertEquals("Recipe " + i, row.getRecipeName());
+            assertEquals(i % 2 != 0, row.hasNumServings(), "servings of row " + i);
+            assertEquals(i % 3 != 0, row.hasPrepTime(), "prep time of row " + i);
+            assertEquals(i % 5 != 0, row.hasCookTime(), "cook time of row " + i);
+            assertEquals(i % 7 == 0 ? null : "Notes " + i, row.getNotes());
+            if (row.hasPrepTime()) {
+                assertEquals(i + 0.5, row.getPrepTime());
+            }
+        }
+    }
+
+    @Test
+    void clearForgetsNullsAndStringsButKeepsWorking() {
+        RecipeBatch batch = new RecipeBatch(4);
+        for (int i = 0; i < 70; i++) {
+            batch.add(i, "Old " + i, null, null, null, null);
+        }
+        batch.clear();
+        assertTrue(batch.isEmpty());
+
+        int first = batch.addRow(1);
+        batch.setNumServings(first, 4);
+        batch.setPrepTime(first, 10.0);
+        batch.setRecipeName(first, "New");
+        int second = batch.addRow(2);
+
+        RecipeBatch.Row row = batch.row(first);
+        assertTrue(row.hasNumServings());
+        assertTrue(row.hasPrepTime());
+        assertFalse(row.hasCookTime());
+        assertEquals("New", row.getRecipeName());
+        row.moveTo(second);
+        assertFalse(row.hasNumServings());
+        assertNull(row.getRecipeName());
+        assertNull(row.getNotes());
+    }
+
+    @Test
+    void storesStringsAsUtf8InTheArena() {
+        String[] values = { "", "plain", "cr\u00e8me br\u00fbl\u00e9e", "\u5bff\u53f8", "\uD83C\uDF70 cake",
+            String.join("", Collections.nCopies(5_000, "\u00e9")) };
+        RecipeBatch batch = new RecipeBatch(2);
+        for (int i = 0; i < values.length; i++) {
+            batch.add(i, values[i], null, null, null, values[values.length - 1 - i]);
+        }
+
+        String[] names = new String[values.length];
+        String[] notes = new String[values.length];
+        batch.forEach(row -> {
+            names[row.getIndex()] = row.getRecipeName();
+            notes[row.getIndex()] = row.getNotes();
+        });
+        assertEquals(Arrays.asList(values), Arrays.asList(names));
+        assertEquals("", notes[values.length - 1]);
+    }
+
+    @Test
+    void aLoneSurrogateBecomesAQuestionMark() {
+        RecipeBatch batch = new RecipeBatch();
+        batch.add(1, "a\uD83Cb", null, null, null, null);
+        assertEquals("a?b", batch.row(0).getRecipeName());
+    }
+
+    @Test
+    void rowsCopyOutAsRecipes() {
+        RecipeBatch batch = new RecipeBatch();
+        batch.add(new Recipe("Soup", 4, 10.0, null, "Hot"));
+        batch.add(7, "Bread", null, 30.0, 45.0, null);
+
+        Recipe bread = batch.row(1).toRecipe();
+        assertEquals(Integer.valueOf(7), bread.getId());
+        assertEquals("Bread", bread.getRecipeName());
+        assertNull(bread.getNumServings());
+        assertEquals(Double.valueOf(45.0), bread.getCookTime());
+        assertNull(batch.row(0).toRecipe().getCookTime());
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.row(2));
+    }
+}
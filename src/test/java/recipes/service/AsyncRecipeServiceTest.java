@@ -0,0 +1,64 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import recipes.entity.Recipe;
+
+/** Runs calls against a service that blocks until released, counting how many overlap. */
+class AsyncRecipeServiceTest {
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger mostRunning = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final RecipeService blockingService = new RecipeService() {
+        @Override
+        public Recipe fetchRecipeById(Integer recipeId) {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            Recipe recipe = new Recipe("Recipe " + recipeId, 1, 1.0, 1.0, null);
+            recipe.setId(recipeId);
+            return recipe;
+        }
+    };
+
+    @Test
+    void noMoreThanMaxConcurrencyCallsRunAtOnce() throws Exception {
+        try (AsyncRecipeService async = new AsyncRecipeService(blockingService, 3)) {
+            List<CompletableFuture<Recipe>> calls = new ArrayList<>();
+            for (int id = 1; id <= 20; id++) {
+                calls.add(async.fetchRecipeById(id));
+            }
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (running.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            // Give any call that slipped past the cap time to show up
+            Thread.sleep(100);
+            assertEquals(3, running.get());
+            assertEquals(0, async.getAvailablePermits());
+
+            release.countDown();
+            for (int i = 0; i < calls.size(); i++) {
+                assertEquals(Integer.valueOf(i + 1), calls.get(i).get(10, TimeUnit.SECONDS).getId());
+            }
+            assertEquals(3, mostRunning.get());
+            assertEquals(3, async.getAvailablePermits());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import recipes.dao.DbConnection;
+
+/**
+ * Runs against H2 in MySQL mode, which has no LOAD DATA, so only the
+ * multi-row INSERT path runs. Set {@code recipes.test.mysql.url} to a
+ * scratch MySQL database with {@code local_infile} on to compare it with
+ * the LOAD DATA path as well.
+ */
+class CsvImporterTest {
+
+    @BeforeAll
+    static void useStandIn() {
+        System.setProperty("recipes.db.url", System.getProperty("recipes.test.mysql.url",
+            "jdbc:h2:mem:importer;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+        DbConnection.reload();
+        new SchemaMigrator(new ScriptLoader(100, 1_000, (name, committed, skipped, millis) -> {
+        }), false).recreate();
+    }
+
+    @Test
+    void countsRowsIgnoredAsDuplicatesAsRejected() {
+        StringBuilder csv = new StringBuilder("category_id,category_name\n");
+        for (int id = 1; id <= 2_500; id++) {
+            csv.append(id).append(",Category ").append(id).append("\r\n");
+        }
+        csv.append("5,Duplicate\n7,Duplicate\n2501,\"Soups, stews\"\n");
+
+        ImportResult result = new CsvImporter(false).importFile("category",
+            Arrays.asList("category_id", "category_name"),
+            new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, true);
+
+        assertFalse(result.isLocalInfile());
+        assertEquals(2_501, result.getLoadedCount());
+        assertEquals(2, result.getRejectedCount());
+    }
+
+    @Test
+    void bothPathsLoadTheSameNulls() throws SQLException {
+        String csv = "recipe_id,recipe_name,notes\n"
+            + "9001,Quoted empty,\"\"\n"
+            + "9002,Unquoted empty,\n"
+            + "9003,Unquoted word,NULL\n"
+            + "9004,Quoted word,\"NULL\"\n"
+            + "9005,Text,\"Stir, then rest\"\n";
+
+        assertFalse(importRecipes(new CsvImporter(false), csv).isLocalInfile());
+        List<String> inserted = notesOfImportedRecipes();
+        assertEquals(Arrays.asList(null, null, null, "NULL", "Stir, then rest"), inserted);
+
+        assumeTrue(importRecipes(new CsvImporter(), csv).isLocalInfile(), "LOAD DATA needs MySQL with local_infile");
+        assertEquals(inserted, notesOfImportedRecipes());
+    }
+
+    private static ImportResult importRecipes(CsvImporter importer, String csv) throws SQLException {
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM recipe WHERE recipe_id > 9000")) {
+            stmt.executeUpdate();
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        }
+        return importer.importFile("recipe", Arrays.asList("recipe_id", "recipe_name", "notes"),
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, true);
+    }
+
+    private static List<String> notesOfImportedRecipes() throws SQLException {
+        List<String> notes = new ArrayList<>();
+        try (Connection conn = DbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT notes FROM recipe WHERE recipe_id > 9000 ORDER BY recipe_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                notes.add(rs.getString(1));
+            }
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,64 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import recipes.dao.DbConnection;
+
+/** Reads H2's plan text, the stand-in for MySQL's EXPLAIN table. */
+class IndexAdvisorTest {
+    private final IndexAdvisor advisor = new IndexAdvisor();
+
+    @BeforeAll
+    static void useStandIn() {
+        System.setProperty("recipes.db.url",
+            "jdbc:h2:mem:advisor;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        DbConnection.reload();
+        new SchemaMigrator(new ScriptLoader(100, 1_000, (name, committed, skipped, millis) -> {
+        }), false).recreate();
+    }
+
+    @Test
+    void anIndexedLookupHasNoFinding() {
+        assertEquals(Collections.emptyList(),
+            advisor.advise(Collections.singletonList("SELECT recipe_id FROM recipe WHERE recipe_name = ?")));
+    }
+
+    @Test
+    void anUnindexedPredicateIsAFullScan() {
+        String sql = "SELECT recipe_id FROM recipe WHERE notes = ?";
+        List<IndexAdvice> advice = advisor.advise(Collections.singletonList(sql));
+
+        assertEquals(1, advice.size(), advice.toString());
+        assertEquals(sql, advice.get(0).getSql());
+        assertEquals("recipe", advice.get(0).getTable());
+        assertEquals("ALL", advice.get(0).getAccessType());
+        assertFalse(advice.get(0).isExpected());
+    }
+
+    @Test
+    void aScanWithoutWhereIsExpectedAndOtherStatementsAreSkipped() {
+        List<IndexAdvice> advice = advisor.advise(Arrays.asList(
+            "SELECT recipe_id, notes FROM recipe LIMIT ?",
+            "INSERT INTO recipe (recipe_name) VALUES (?)"));
+
+        assertEquals(1, advice.size(), advice.toString());
+        assertTrue(advice.get(0).isExpected());
+    }
+
+    @Test
+    void aStatementThatCannotBeExplainedIsReported() {
+        List<IndexAdvice> advice = advisor.advise(Collections.singletonList("SELECT missing FROM recipe"));
+
+        assertEquals(1, advice.size());
+        assertEquals("error", advice.get(0).getAccessType());
+    }
+}
@@ -0,0 +1,63 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** Covers the range split; H2 cannot stream with the MySQL fetch size the scans use. */
+class PartitionedRecipeScanTest {
+
+    @Test
+    void splitsEvenlyWithTheRemainderOnTheFirstRanges() {
+        List<long[]> ranges = PartitionedRecipeScan.split(1, 10, 3);
+
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new long[] { 1, 4 }, ranges.get(0));
+        assertArrayEquals(new long[] { 5, 7 }, ranges.get(1));
+        assertArrayEquals(new long[] { 8, 10 }, ranges.get(2));
+    }
+
+    @Test
+    void neverMakesMoreRangesThanIds() {
+        List<long[]> ranges = PartitionedRecipeScan.split(7, 9, 8);
+
+        assertEquals(3, ranges.size());
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(new long[] { 7 + i, 7 + i }, ranges.get(i));
+        }
+        assertEquals(1, PartitionedRecipeScan.split(42, 42, 4).size());
+    }
+
+    @Test
+    void makesOneRangeForFewerThanOnePartition() {
+        assertArrayEquals(new long[] { 1, 100 }, PartitionedRecipeScan.split(1, 100, 0).get(0));
+        assertEquals(1, PartitionedRecipeScan.split(1, 100, -3).size());
+    }
+
+    @Test
+    void rangesAreContiguousAndCoverTheWholeSpan() {
+        long[][] cases = { { 1, 1_000_003 }, { 500, 501 }, { 1, Integer.MAX_VALUE } };
+        for (long[] bounds : cases) {
+            for (int partitions = 1; partitions <= 17; partitions++) {
+                List<long[]> ranges = PartitionedRecipeScan.split(bounds[0], bounds[1], partitions);
+                long expectedStart = bounds[0];
+                long smallest = Long.MAX_VALUE;
+                long largest = 0;
+                for (long[] range : ranges) {
+                    assertEquals(expectedStart, range[0]);
+                    assertTrue(range[1] >= range[0]);
+                    long width = range[1] - range[0] + 1;
+                    smallest = Math.min(smallest, width);
+                    largest = Math.max(largest, width);
+                    expectedStart = range[1] + 1;
+                }
+                assertEquals(bounds[1] + 1, expectedStart);
+                assertTrue(largest - smallest <= 1, "widths differ by more than one");
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks each operation against a {@link TreeSet} holding the same values. */
+class PostingListTest {
+
+    @Test
+    void addAndRemoveReportChangesAcrossGroups() {
+        PostingList list = new PostingList();
+        assertTrue(list.isEmpty());
+
+        assertTrue(list.add(70_000));
+        assertTrue(list.add(5));
+        assertFalse(list.add(5));
+        assertTrue(list.add(65_535));
+        assertArrayEquals(new int[] { 5, 65_535, 70_000 }, list.toArray(Integer.MAX_VALUE));
+        assertArrayEquals(new int[] { 5, 65_535 }, list.toArray(2));
+
+        assertFalse(list.remove(6));
+        assertFalse(list.remove(200_000));
+        assertTrue(list.remove(70_000));
+        assertTrue(list.remove(5));
+        assertTrue(list.remove(65_535));
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.toArray(10).length);
+    }
+
+    @Test
+    void aGroupSwitchesToABitmapAndBack() {
+        PostingList list = new PostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // 5,000 values in one group is past the 4,096 an array holds
+        for (int value = 0; value < 10_000; value += 2) {
+            list.add(value);
+            expected.add(value);
+        }
+        assertEquals(expected, toSet(list));
+
+        for (int value = 0; value < 4_000; value += 2) {
+            list.remove(value);
+            expected.remove(value);
+        }
+        assertEquals(expected.size(), list.cardinality());
+        assertEquals(expected, toSet(list));
+        assertTrue(list.add(1));
+        assertFalse(list.add(9_998));
+    }
+
+    @Test
+    void andAndOrMatchSetOperations() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            // Dense and sparse groups, so array and bitmap containers meet in both orders
+            TreeSet<Integer> a = randomSet(random, round % 2 == 0 ? 8_000 : 300);
+            TreeSet<Integer> b = randomSet(random, round % 3 == 0 ? 8_000 : 300);
+            TreeSet<Integer> c = randomSet(random, 50);
+
+            TreeSet<Integer> intersection = new TreeSet<>(a);
+            intersection.retainAll(b);
+            assertEquals(intersection, toSet(PostingList.and(toList(a), toList(b))));
+            assertEquals(intersection, toSet(PostingList.and(toList(b), toList(a))));
+
+            TreeSet<Integer> union = new TreeSet<>(a);
+            union.addAll(b);
+            union.addAll(c);
+            assertEquals(union, toSet(PostingList.or(Arrays.asList(toList(a), toList(b), toList(c)))));
+        }
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int perGroup) {
+        TreeSet<Integer> values = new TreeSet<>();
+        for (int group = 0; group < 3; group++) {
+            int base = random.nextInt(4) << 16;
+            for (int i = 0; i < perGroup; i++) {
+                values.add(base + random.nextInt(1 << 14));
+            }
+        }
+        return values;
+    }
+
+    private static PostingList toList(TreeSet<Integer> values) {
+        PostingList list = new PostingList();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static TreeSet<Integer> toSet(PostingList list) {
+        int[] values = list.toArray(Integer.MAX_VALUE);
+        assertEquals(list.cardinality(), values.length);
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                assertTrue(values[i - 1] < values[i], "values must ascend");
+            }
+            set.add(values[i]);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,93 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Ingredient;
+import recipes.entity.Unit;
+
+/** Runs the service against H2 in MySQL mode, standing in for MySQL. */
+class RecipeServiceTest {
+    private static RecipeService recipeService;
+
+    @BeforeAll
+    static void useStandIn() {
+        System.setProperty("recipes.db.url",
+            "jdbc:h2:mem:service;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        DbConnection.reload();
+        recipeService = new RecipeService();
+        recipeService.createAndPopulatedTables();
+    }
+
+    @Test
+    void addsIngredientsWithAndWithoutAUnit() {
+        Integer recipeId = recipeService.addRecipe("Pancakes", 4, 10.0, 15.0, null);
+        Ingredient eggs = new Ingredient("Eggs", null, new BigDecimal("2"), null);
+        Ingredient flour = new Ingredient("Flour", "sifted", new BigDecimal("1.5"), new Unit(null, null, "Cups"));
+
+        recipeService.addIngredients(recipeId, Arrays.asList(eggs, flour));
+
+        assertNotNull(eggs.getIngredientId());
+        assertNull(eggs.getUnit());
+        assertNotNull(flour.getIngredientId());
+        assertEquals("cup", flour.getUnit().getUnitNameSingular());
+        assertEquals("tablespoon", recipeService.findUnit("Tablespoons").getUnitNameSingular());
+    }
+
+    @Test
+    void exportsEachRecipeWithItsIngredients() {
+        Integer recipeId = recipeService.addRecipe("Omelette", 1, 5.0, 5.0, null);
+        recipeService.addIngredients(recipeId, Arrays.asList(
+            new Ingredient("Eggs", "beaten", new BigDecimal("3"), null),
+            new Ingredient("Milk", null, new BigDecimal("2"), new Unit(null, "tablespoon", null))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        recipeService.exportRecipes(out, ExportFormat.JSON_LINES, true, false);
+
+        String omelette = Arrays.stream(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n"))
+            .filter(line -> line.contains("\"Omelette\"")).findFirst().orElseThrow(AssertionError::new);
+        assertTrue(omelette.contains("\"ingredient_name\":\"Eggs\""), omelette);
+        assertTrue(omelette.contains("\"unit\":\"tablespoons\""), omelette);
+    }
+
+    @Test
+    void statisticsReadPrepTimesAsMinutesAndCacheThem() {
+        recipeService.addRecipe("Stew", 6, 42.5, 180.0, null);
+        RecipeStats stats = new RecipeStats(new ReferenceDataCache(), new PartitionedRecipeScan(), 60_000);
+
+        RecipeStats.Distribution prepTimes = stats.getPrepTimeDistribution();
+
+        assertEquals(42.5, prepTimes.getMax());
+        assertSame(prepTimes, stats.getPrepTimeDistribution());
+    }
+
+    @Test
+    void topIngredientsForNearbyLimitsShareOneQuery() {
+        Integer recipeId = recipeService.addRecipe("Salad", 2, 10.0, 0.0, null);
+        recipeService.addIngredients(recipeId, Arrays.asList(
+            new Ingredient("Lettuce", null, new BigDecimal("1"), null),
+            new Ingredient("Tomato", "diced", new BigDecimal("2"), null),
+            new Ingredient("Cucumber", null, new BigDecimal("1"), null)));
+        RecipeStats stats = new RecipeStats(new ReferenceDataCache(), new PartitionedRecipeScan(), 60_000);
+
+        List<RecipeStats.Frequency> three = stats.getTopIngredients(3);
+        List<RecipeStats.Frequency> four = stats.getTopIngredients(4);
+
+        assertEquals(3, three.size());
+        assertEquals(four.subList(0, 3), three);
+        assertSame(four.get(0), three.get(0));
+    }
+}
@@ -0,0 +1,175 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import recipes.entity.Recipe;
+import recipes.exception.DbException;
+
+/** Flushes by hand against a writer that fails on chosen recipe IDs. */
+class RecipeWriteBehindQueueTest {
+    private static final long NEVER = 3_600_000;
+    private static final int ALWAYS = Integer.MAX_VALUE;
+
+    // Recipe ID to the number of writes of it that still fail
+    private final Map<Integer, Integer> failures = new ConcurrentHashMap<>();
+    private final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> attempted = Collections.synchronizedList(new ArrayList<>());
+    private volatile Consumer<Recipe> duringWrite = recipe -> {
+    };
+    private RecipeWriteBehindQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        failures.clear();
+        queue.close();
+    }
+
+    @Test
+    void aRecipeThatKeepsFailingIsDroppedWithoutHoldingBackItsBatch() {
+        queue = newQueue(10, 10, 3);
+        failures.put(2, ALWAYS);
+        enqueue(1, 2, 3);
+
+        assertThrows(DbException.class, queue::flush);
+        assertEquals(Arrays.asList(1, 3), written);
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(1, queue.getDroppedRecipeCount());
+        // Once in the batch, then three times on its own
+        assertEquals(4, attempts(2));
+    }
+
+    @Test
+    void aRecipeThatFailsBrieflyIsWrittenByTheSameFlush() {
+        queue = newQueue(10, 10, 3);
+        failures.put(2, 2);
+        enqueue(1, 2, 3);
+
+        queue.flush();
+        assertEquals(Arrays.asList(1, 3, 2), written);
+        assertEquals(0, queue.getDroppedRecipeCount());
+    }
+
+    // With flushThreshold below the number queued the flusher thread may take part, so these check the outcome
+
+    @Test
+    void aFailedBatchDoesNotStopTheFlush() {
+        queue = newQueue(10, 2, 2);
+        failures.put(1, ALWAYS);
+        enqueue(1, 2, 3, 4, 5);
+
+        flushIgnoringFailures();
+        assertEquals(new TreeSet<>(Arrays.asList(2, 3, 4, 5)), new TreeSet<>(written));
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(1, queue.getDroppedRecipeCount());
+    }
+
+    @Test
+    void closeWritesEverythingWhenABatchFailsOnShutdown() {
+        queue = newQueue(10, 2, 3);
+        failures.put(1, 1);
+        failures.put(4, ALWAYS);
+        enqueue(1, 2, 3, 4, 5);
+
+        try {
+            queue.close();
+        } catch (DbException expected) {
+            // Recipe 4 never goes in; whichever flush dropped it reports that
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2, 3, 5)), new TreeSet<>(written));
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(1, queue.getDroppedRecipeCount());
+    }
+
+    @Test
+    void aNewEditStartsItsAttemptsAgain() {
+        queue = newQueue(10, 10, 2);
+        failures.put(2, ALWAYS);
+        enqueue(2);
+        duringWrite = recipe -> {
+            if (attempts(2) == 1) {
+                queue.enqueue(recipe(2));
+            }
+        };
+
+        assertThrows(DbException.class, queue::flush);
+        // The first state fails once and is replaced; the new one gets its own two attempts
+        assertEquals(3, attempts(2));
+        assertEquals(1, queue.getDroppedRecipeCount());
+    }
+
+    @Test
+    void recipesBeingFlushedKeepTheirPlaceWithinCapacity() {
+        queue = newQueue(2, 2, 1);
+        List<RuntimeException> refused = Collections.synchronizedList(new ArrayList<>());
+        duringWrite = recipe -> {
+            try {
+                queue.enqueue(recipe(3));
+            } catch (DbException e) {
+                refused.add(e);
+            }
+        };
+        enqueue(1, 2);
+
+        queue.flush();
+        assertEquals(2, refused.size());
+        assertEquals(Arrays.asList(1, 2), written);
+    }
+
+    private void flushIgnoringFailures() {
+        try {
+            queue.flush();
+        } catch (DbException expected) {
+            // The failing recipe was dropped; the test checks the outcome
+        }
+    }
+
+    private RecipeWriteBehindQueue newQueue(int capacity, int flushThreshold, int maxAttempts) {
+        return new RecipeWriteBehindQueue(batch -> {
+            for (Recipe recipe : batch) {
+                attempted.add(recipe.getId());
+                duringWrite.accept(recipe);
+            }
+            for (Recipe recipe : batch) {
+                int left = failures.getOrDefault(recipe.getId(), 0);
+                if (left > 0) {
+                    failures.put(recipe.getId(), left == ALWAYS ? ALWAYS : left - 1);
+                    throw new DbException("Cannot write recipe " + recipe.getId());
+                }
+            }
+            for (Recipe recipe : batch) {
+                written.add(recipe.getId());
+            }
+        }, capacity, flushThreshold, NEVER, 0, maxAttempts);
+    }
+
+    private void enqueue(int... ids) {
+        for (int id : ids) {
+            queue.enqueue(recipe(id));
+        }
+    }
+
+    private int attempts(int id) {
+        synchronized (attempted) {
+            return Collections.frequency(attempted, id);
+        }
+    }
+
+    private static Recipe recipe(int id) {
+        Recipe recipe = new Recipe("Recipe " + id, 2, 10.0, 20.0, null);
+        recipe.setId(id);
+        return recipe;
+    }
+}
@@ -0,0 +1,67 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import recipes.dao.DbConnection;
+
+/** Runs the cache against H2 in MySQL mode, standing in for MySQL. */
+class ReferenceDataCacheTest {
+
+    @BeforeAll
+    static void useStandIn() {
+        System.setProperty("recipes.db.url",
+            "jdbc:h2:mem:reference;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        DbConnection.reload();
+        new SchemaMigrator(new ScriptLoader(100, 1_000, (name, committed, skipped, millis) -> {
+        }), false).recreate();
+    }
+
+    @Test
+    void invalidateReloadsBeforeItReturns() throws SQLException {
+        ReferenceDataCache cache = new ReferenceDataCache();
+        ReferenceDataCache.Snapshot preloaded = cache.preload();
+        execute("INSERT INTO unit (unit_name_singular, unit_name_plural) VALUES ('sprig', 'sprigs')");
+
+        assertSame(preloaded, cache.snapshot());
+        assertNull(cache.snapshot().findUnit("sprig"));
+
+        cache.invalidate();
+        assertNotNull(cache.snapshot().findUnit("sprigs"));
+    }
+
+    @Test
+    void aFailedReloadKeepsServingThePreviousSnapshot() throws SQLException {
+        ReferenceDataCache cache = new ReferenceDataCache();
+        ReferenceDataCache.Snapshot preloaded = cache.preload();
+
+        execute("ALTER TABLE category RENAME TO category_moved");
+        try {
+            cache.invalidate();
+            assertSame(preloaded, cache.snapshot());
+        } finally {
+            execute("ALTER TABLE category_moved RENAME TO category");
+        }
+
+        // Still stale, so the next read retries the reload
+        assertNotSame(preloaded, cache.snapshot());
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = DbConnection.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        }
+    }
+}
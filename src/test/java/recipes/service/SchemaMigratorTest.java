@@ -0,0 +1,87 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import recipes.dao.DbConnection;
+import recipes.exception.DbException;
+
+/** Runs every schema revision against H2 in MySQL mode, standing in for MySQL. */
+class SchemaMigratorTest {
+    private final ScriptLoader scriptLoader = new ScriptLoader(100, 1_000, (name, committed, skipped, millis) -> {
+    });
+
+    @BeforeAll
+    static void useStandIn() {
+        System.setProperty("recipes.db.url",
+            "jdbc:h2:mem:migrator;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        DbConnection.reload();
+    }
+
+    @Test
+    void migratesToTheLatestRevisionWithoutFullTextIndexes() {
+        SchemaMigrator migrator = new SchemaMigrator(scriptLoader, false);
+
+        assertEquals(SchemaMigrator.getLatestVersion(), migrator.recreate());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 4, 5)), migrator.getAppliedVersions());
+        // Nothing left to apply
+        assertEquals(SchemaMigrator.getLatestVersion(), migrator.migrate());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 4, 5)), migrator.getAppliedVersions());
+    }
+
+    @Test
+    void timesBecomeTheMinutesThatWereWritten() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(scriptLoader, false);
+        migrator.recreate();
+        // Roll back to revision 1, where the columns were TIME
+        try (Connection conn = DbConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM schema_version");
+        }
+        scriptLoader.load("recipe_schema.sql", new SqlScriptParser(new InputStreamReader(
+            getClass().getClassLoader().getResourceAsStream("recipe_schema.sql"), StandardCharsets.UTF_8)));
+        try (Connection conn = DbConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO schema_version (version, description) VALUES (1, 'Recipe tables')");
+            // 15 and 130 minutes, as MySQL stored the numbers the application bound
+            stmt.execute("INSERT INTO recipe (recipe_name, prep_time, cook_time) VALUES "
+                + "('Carbonara', '00:00:15', '00:01:30'), ('Salad', NULL, '00:00:00')");
+        }
+
+        migrator.migrate();
+
+        try (Connection conn = DbConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT prep_time, cook_time FROM recipe ORDER BY recipe_id")) {
+            assertTrue(rs.next());
+            assertEquals(15.0, rs.getDouble(1));
+            assertEquals(130.0, rs.getDouble(2));
+            assertTrue(rs.next());
+            assertNull(rs.getObject(1));
+            assertEquals(0.0, rs.getDouble(2));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void fullTextIndexesNeedMySql() {
+        new SchemaMigrator(scriptLoader, false).recreate();
+
+        assertThrows(DbException.class, () -> new SchemaMigrator(scriptLoader, true).migrate());
+    }
+}
@@ -0,0 +1,72 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import recipes.exception.DbException;
+
+class SqlScriptParserTest {
+
+    @Test
+    void splitsOnSemicolonsAndCollapsesWhitespace() {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2 FROM t", "SELECT 3"),
+            parse("SELECT 1;\n\n  ;SELECT   2\n\tFROM t ;\nSELECT 3"));
+    }
+
+    @Test
+    void keepsDelimitersAndCommentMarkersInsideQuotes() {
+        String sql = "INSERT INTO t VALUES ('a;b', \"c -- d\", 'e # f', '/* g */') ON `h;i` = 1";
+        assertEquals(Arrays.asList(sql), parse(sql + ";"));
+    }
+
+    @Test
+    void keepsEscapedAndDoubledQuotes() {
+        assertEquals(Arrays.asList("SELECT 'it\\'s; fine', 'it''s; fine', \"say \"\"hi;\"\"\"", "SELECT 2"),
+            parse("SELECT 'it\\'s; fine', 'it''s; fine', \"say \"\"hi;\"\"\";SELECT 2;"));
+    }
+
+    @Test
+    void dropsCommentsButKeepsVersionComments() {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2", "SELECT 3--1", "/*!40101 SET NAMES utf8mb4 */"),
+            parse("-- leading; comment\nSELECT 1 -- one;\n;\n# two;\nSELECT /* three; */ 2;\n"
+                + "SELECT 3--1;\n/*!40101 SET NAMES utf8mb4 */;\n-- trailing"));
+    }
+
+    @Test
+    void followsDelimiterCommands() {
+        assertEquals(Arrays.asList("CREATE PROCEDURE p() BEGIN SELECT 1; SELECT 2; END", "SELECT 3"),
+            parse("DELIMITER $$\nCREATE PROCEDURE p()\nBEGIN\n  SELECT 1;\n  SELECT 2;\nEND$$\n"
+                + "delimiter ;\nSELECT 3;"));
+    }
+
+    @Test
+    void readsStatementsLongerThanItsBuffer() {
+        char[] text = new char[20_000];
+        Arrays.fill(text, 'x');
+        String literal = "'" + new String(text) + "'";
+
+        assertEquals(Arrays.asList("SELECT " + literal, "SELECT 2"), parse("SELECT " + literal + ";SELECT 2;"));
+    }
+
+    @Test
+    void rejectsUnterminatedLiteralsAndComments() {
+        assertThrows(DbException.class, () -> parse("SELECT 'open;"));
+        assertThrows(DbException.class, () -> parse("SELECT 1 /* open;"));
+        assertThrows(DbException.class, () -> parse("DELIMITER \nSELECT 1;"));
+    }
+
+    private static List<String> parse(String script) {
+        List<String> statements = new ArrayList<>();
+        try (SqlScriptParser parser = new SqlScriptParser(new StringReader(script))) {
+            parser.forEachRemaining(statements::add);
+        }
+        return statements;
+    }
+}